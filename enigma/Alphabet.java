@@ -1,7 +1,17 @@
 package enigma;
 
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  The byte alphabet, named
+ *  *BYTES in configuration files (a name no other alphabet can have),
+ *  holds the 256 characters with codes 0 .. 255, standing for the byte
+ *  values; each character's index is its code.  Since those include
+ *  characters that cannot be written in configuration or settings
+ *  lines, its symbols are written there as pairs of hexadecimal digits
+ *  (see decode).
  *  @author David Oh
  */
 class Alphabet {
@@ -9,25 +19,131 @@ class Alphabet {
     /** A new alphabet containing CHARS.  Character number #k has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
+        this(checked(chars), false);
+    }
+
+    /** A new alphabet containing CHARS, which is the byte alphabet iff
+     *  BYTES. */
+    private Alphabet(char[] chars, boolean bytes) {
+        _bytes = bytes;
+        _alphabetArray = chars;
+        char min = Character.MAX_VALUE;
+        char max = 0;
+        for (char c : _alphabetArray) {
+            min = (char) Math.min(min, c);
+            max = (char) Math.max(max, c);
+        }
+        if (_alphabetArray.length == 0) {
+            min = 0;
+        }
+        int span = max - min + 1;
+        if (span <= DENSE_SPAN || span <= DENSE_FACTOR * size()) {
+            buildDense(min, span);
+        } else {
+            buildSparse();
+        }
+    }
+
+    /** A default alphabet of all upper-case characters. */
+    Alphabet() {
+        this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+    }
+
+    /** Return the byte alphabet. */
+    static Alphabet bytes() {
+        char[] chars = new char[BYTE_VALUES];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = (char) i;
+        }
+        return new Alphabet(chars, true);
+    }
+
+    /** Return the characters of CHARS, which must not include the
+     *  characters that delimit cycles and settings lines. */
+    private static char[] checked(String chars) {
         if (chars.contains("(") || chars.contains(")")
                 || chars.contains("*")) {
             throw new EnigmaException("Alphabet contains "
                     + "incorrect letters.");
         }
-        _alphabetArray = chars.toCharArray();
+        return chars.toCharArray();
+    }
+
+    /** Fill the direct-indexed table for characters MIN .. MIN+SPAN-1. */
+    private void buildDense(char min, int span) {
+        _denseMin = min;
+        _dense = new int[span];
+        Arrays.fill(_dense, -1);
         for (int i = 0; i < _alphabetArray.length; i += 1) {
-            for (int j = i + 1; j < _alphabetArray.length; j += 1) {
-                if (_alphabetArray[i] == _alphabetArray[j]) {
-                    throw new EnigmaException("Alphabet can't "
-                            + "have duplicate letters.");
+            int slot = _alphabetArray[i] - min;
+            if (_dense[slot] >= 0) {
+                throw duplicate();
+            }
+            _dense[slot] = i;
+        }
+    }
+
+    /** Fill the open-addressed table used for alphabets whose characters
+     *  are spread too thinly for a direct-indexed table. */
+    private void buildSparse() {
+        int capacity = Integer.highestOneBit(size() * 2 - 1) << 1;
+        _sparseMask = capacity - 1;
+        _sparseShift = Integer.numberOfLeadingZeros(_sparseMask);
+        _sparseKeys = new char[capacity];
+        _sparseValues = new int[capacity];
+        Arrays.fill(_sparseValues, -1);
+        for (int i = 0; i < _alphabetArray.length; i += 1) {
+            char c = _alphabetArray[i];
+            int slot = hash(c);
+            while (_sparseValues[slot] >= 0) {
+                if (_sparseKeys[slot] == c) {
+                    throw duplicate();
                 }
+                slot = (slot + 1) & _sparseMask;
             }
+            _sparseKeys[slot] = c;
+            _sparseValues[slot] = i;
         }
     }
 
-    /** A default alphabet of all upper-case characters. */
-    Alphabet() {
-        this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+    /** Return the home slot of CH in the open-addressed table. */
+    private int hash(char ch) {
+        return (ch * HASH_MULTIPLIER) >>> _sparseShift;
+    }
+
+    /** Return the exception reported for a repeated character. */
+    private static EnigmaException duplicate() {
+        return new EnigmaException("Alphabet can't have duplicate letters.");
+    }
+
+    /** Returns true iff I am the byte alphabet. */
+    boolean isBytes() {
+        return _bytes;
+    }
+
+    /** Return the characters written as TEXT in a configuration or
+     *  settings line.  For the byte alphabet, TEXT must consist of pairs
+     *  of hexadecimal digits, each pair standing for one character;
+     *  otherwise TEXT stands for itself. */
+    String decode(String text) {
+        if (!_bytes) {
+            return text;
+        }
+        if (text.length() % 2 != 0) {
+            throw error("byte symbols must be pairs of hexadecimal "
+                        + "digits: %s", text);
+        }
+        char[] result = new char[text.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            int high = Character.digit(text.charAt(2 * i), 16);
+            int low = Character.digit(text.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw error("byte symbols must be pairs of hexadecimal "
+                            + "digits: %s", text);
+            }
+            result[i] = (char) (high * 16 + low);
+        }
+        return new String(result);
     }
 
     /** Returns the size of the alphabet. */
@@ -37,13 +153,7 @@ class Alphabet {
 
     /** Returns true if preprocess(CH) is in this alphabet. */
     boolean contains(char ch) {
-        boolean contained = false;
-        for (int j = 0; j < _alphabetArray.length; j += 1) {
-            if (_alphabetArray[j] == ch) {
-                contained = true;
-            }
-        }
-        return contained;
+        return toInt(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
@@ -53,16 +163,68 @@ class Alphabet {
     }
 
     /** Returns the index of character preprocess(CH), which must be in
-     *  the alphabet. This is the inverse of toChar(). */
+     *  the alphabet. This is the inverse of toChar(). Returns -1 if CH
+     *  is not in the alphabet. */
     int toInt(char ch) {
-        for (int i = 0; i < _alphabetArray.length; i += 1) {
-            if (_alphabetArray[i] == ch) {
-                return i;
+        if (_dense != null) {
+            int slot = ch - _denseMin;
+            if (slot < 0 || slot >= _dense.length) {
+                return -1;
             }
+            return _dense[slot];
+        }
+        int slot = hash(ch);
+        while (_sparseValues[slot] >= 0) {
+            if (_sparseKeys[slot] == ch) {
+                return _sparseValues[slot];
+            }
+            slot = (slot + 1) & _sparseMask;
         }
         return -1;
     }
 
+    /** Name of the byte alphabet in configuration files. */
+    static final String BYTES_NAME = "*BYTES";
+
+    /** Number of characters in the byte alphabet. */
+    static final int BYTE_VALUES = 256;
+
+    /** Alphabets whose characters span at most this many code points
+     *  always use a direct-indexed table. */
+    private static final int DENSE_SPAN = 1 << 12;
+
+    /** Wider alphabets use a direct-indexed table as long as it has no
+     *  more than this many entries per character. */
+    private static final int DENSE_FACTOR = 16;
+
+    /** Fibonacci hashing multiplier for the open-addressed table. */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /** True iff I am the byte alphabet. */
+    private final boolean _bytes;
+
     /** Instance variable char array of letters in alphabet. */
     private char[] _alphabetArray;
+
+    /** Smallest character covered by _dense. */
+    private char _denseMin;
+
+    /** Index of each character in alphabet, indexed by the character
+     *  minus _denseMin; -1 for characters not in alphabet. Null when the
+     *  alphabet uses the open-addressed table instead. */
+    private int[] _dense;
+
+    /** Characters of the open-addressed table, valid where the
+     *  corresponding entry of _sparseValues is not -1. */
+    private char[] _sparseKeys;
+
+    /** Indices of the characters in _sparseKeys, or -1 for empty slots. */
+    private int[] _sparseValues;
+
+    /** Mask wrapping probes around the open-addressed table. */
+    private int _sparseMask;
+
+    /** Shift reducing a hashed character to a slot of the open-addressed
+     *  table. */
+    private int _sparseShift;
 }
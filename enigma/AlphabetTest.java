@@ -0,0 +1,79 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author David Oh
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Check that every character of CHARS round-trips through ALPHA. */
+    private void checkRoundTrip(Alphabet alpha, String chars) {
+        assertEquals(chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            assertEquals(i, alpha.toInt(chars.charAt(i)));
+            assertEquals(chars.charAt(i), alpha.toChar(i));
+            assertTrue(alpha.contains(chars.charAt(i)));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testDenseAlphabet() {
+        String chars = "ZYXWVUTSRQPONMLKJIHGFEDCBA0123456789";
+        Alphabet alpha = new Alphabet(chars);
+        checkRoundTrip(alpha, chars);
+        assertEquals(-1, alpha.toInt('a'));
+        assertFalse(alpha.contains(' '));
+        assertFalse(alpha.contains('\uFFFF'));
+    }
+
+    @Test
+    public void testSparseAlphabet() {
+        String chars = "A\u03A9\u4E2D\uAC00\uFFEE!";
+        Alphabet alpha = new Alphabet(chars);
+        checkRoundTrip(alpha, chars);
+        assertEquals(-1, alpha.toInt('B'));
+        assertFalse(alpha.contains('\u4E2E'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicateDense() {
+        new Alphabet("ABCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicateSparse() {
+        new Alphabet("A\uAC00B\uAC00");
+    }
+
+    @Test
+    public void testByteAlphabet() {
+        Alphabet alpha = Alphabet.bytes();
+        assertTrue(alpha.isBytes());
+        assertFalse(new Alphabet().isBytes());
+        assertEquals(256, alpha.size());
+        for (int i = 0; i < alpha.size(); i += 1) {
+            assertEquals(i, alpha.toInt((char) i));
+        }
+        assertEquals(-1, alpha.toInt((char) 256));
+        assertEquals("\u0000(\u00ff", alpha.decode("0028fF"));
+        assertEquals("0028", new Alphabet("0123456789").decode("0028"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testByteSymbolsArePairs() {
+        Alphabet.bytes().decode("002");
+    }
+
+}
@@ -0,0 +1,197 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** A record of how far a run of Main has got through its input file,
+ *  from which an interrupted run can resume with identical output: the
+ *  byte offsets reached in the input and output files, the settings line
+ *  in force, and the rotor positions reached under it.  The size of the
+ *  input file is kept too, so that a checkpoint is not applied to a
+ *  different input.
+ *  @author David Oh
+ */
+class Checkpoint {
+
+    /** A checkpoint for an input file of INPUTSIZE bytes, read as far as
+     *  byte INPUTOFFSET, whose output so far is OUTPUTOFFSET bytes long.
+     *  SETTINGS is the settings line in force, and ROTORS the setting of
+     *  the rotors at that point, in the form taken by setRotors. */
+    Checkpoint(long inputSize, long inputOffset, long outputOffset,
+               String settings, String rotors) {
+        _inputSize = inputSize;
+        _inputOffset = inputOffset;
+        _outputOffset = outputOffset;
+        _settings = settings;
+        _rotors = rotors;
+    }
+
+    /** Return the size of the input file. */
+    long inputSize() {
+        return _inputSize;
+    }
+
+    /** Return the offset in the input file of the first byte not yet
+     *  converted. */
+    long inputOffset() {
+        return _inputOffset;
+    }
+
+    /** Return the number of bytes of output written. */
+    long outputOffset() {
+        return _outputOffset;
+    }
+
+    /** Return the settings line in force. */
+    String settings() {
+        return _settings;
+    }
+
+    /** Return the setting of the rotors. */
+    String rotors() {
+        return _rotors;
+    }
+
+    /** Save me in FILE.  I am written under a temporary name, forced to
+     *  the disk, and then renamed over FILE, so that FILE always holds
+     *  either the previous checkpoint or this one in full. */
+    void write(Path file) {
+        Path temp = null;
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            temp = Files.createTempFile(dir, "enigma", ".tmp");
+            try (FileChannel channel =
+                     FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = ByteBuffer.wrap(encode());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException excp) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (IOException excp) {
+            throw error("could not write checkpoint %s", file);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException excp) {
+                    /* Ignore. */
+                }
+            }
+        }
+    }
+
+    /** Return the checkpoint saved in FILE, or null if there is no such
+     *  file. */
+    static Checkpoint read(Path file) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException excp) {
+            return null;
+        } catch (IOException excp) {
+            throw error("could not read checkpoint %s", file);
+        }
+        try {
+            return decode(ByteBuffer.wrap(bytes));
+        } catch (BufferUnderflowException excp) {
+            throw error("checkpoint %s is truncated", file);
+        }
+    }
+
+    /** Return my saved form. */
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(_inputSize);
+            out.writeLong(_inputOffset);
+            out.writeLong(_outputOffset);
+            writeString(out, _settings);
+            writeString(out, _rotors);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw error("could not encode checkpoint");
+        }
+    }
+
+    /** Return the checkpoint whose saved form is IN. */
+    static Checkpoint decode(ByteBuffer in) {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw error("not a checkpoint");
+        }
+        long inputSize = in.getLong();
+        long inputOffset = in.getLong();
+        long outputOffset = in.getLong();
+        String settings = readString(in);
+        String rotors = readString(in);
+        if (in.hasRemaining() || inputOffset < 0 || inputOffset > inputSize
+            || outputOffset < 0) {
+            throw error("bad checkpoint");
+        }
+        return new Checkpoint(inputSize, inputOffset, outputOffset,
+                              settings, rotors);
+    }
+
+    /** Write S to OUT as its length followed by its characters. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    /** Return a string written by writeString, read from IN. */
+    private static String readString(ByteBuffer in) {
+        int n = in.getInt();
+        if (n < 0 || n > in.remaining() / 2) {
+            throw error("bad string length in checkpoint");
+        }
+        char[] chars = new char[n];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = in.getChar();
+        }
+        return new String(chars);
+    }
+
+    /** First four bytes of a checkpoint. */
+    private static final int MAGIC = 0x456e6943;
+
+    /** Version of the checkpoint format. */
+    private static final int VERSION = 1;
+
+    /** Size of the input file. */
+    private final long _inputSize;
+
+    /** Offset of the first input byte not yet converted. */
+    private final long _inputOffset;
+
+    /** Number of bytes of output written. */
+    private final long _outputOffset;
+
+    /** Settings line in force. */
+    private final String _settings;
+
+    /** Setting of the rotors. */
+    private final String _rotors;
+}
@@ -0,0 +1,66 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/** The suite of all JUnit tests for the Checkpoint class.
+ *  @author David Oh
+ */
+public class CheckpointTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A checkpoint partway through a 5GB input. */
+    private Checkpoint sample() {
+        return new Checkpoint(5L << 30, 3L << 30, 1234567890123L,
+                              "* B Beta III IV I AXLE (HQ) (EX)", "AXZE");
+    }
+
+    /** Check that CHECKPOINT has the contents of sample(). */
+    private void checkSample(Checkpoint checkpoint) {
+        assertEquals(5L << 30, checkpoint.inputSize());
+        assertEquals(3L << 30, checkpoint.inputOffset());
+        assertEquals(1234567890123L, checkpoint.outputOffset());
+        assertEquals("* B Beta III IV I AXLE (HQ) (EX)",
+                     checkpoint.settings());
+        assertEquals("AXZE", checkpoint.rotors());
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() {
+        checkSample(Checkpoint.decode(ByteBuffer.wrap(sample().encode())));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path file = dir.resolve("run.ck");
+        assertNull(Checkpoint.read(file));
+        new Checkpoint(1, 0, 0, "* X", "").write(file);
+        sample().write(file);
+        checkSample(Checkpoint.read(file));
+        Files.delete(file);
+        Files.delete(dir);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTruncatedIsRejected() {
+        byte[] bytes = sample().encode();
+        Checkpoint.decode(ByteBuffer.wrap(
+            Arrays.copyOf(bytes, bytes.length - 2)));
+    }
+}
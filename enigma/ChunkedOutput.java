@@ -0,0 +1,148 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/** Character output that collects text in large reusable buffers and
+ *  writes it out in big chunks, encoded with the default charset unless
+ *  another is given.
+ *  @author David Oh
+ */
+class ChunkedOutput {
+
+    /** An output writing to OUT. */
+    ChunkedOutput(OutputStream out) {
+        this(out, BYTE_BUFFER_SIZE);
+    }
+
+    /** An output writing to OUT that buffers up to SIZE bytes. */
+    ChunkedOutput(OutputStream out, int size) {
+        this(out, size, Charset.defaultCharset());
+    }
+
+    /** An output writing to OUT that buffers up to SIZE bytes and
+     *  encodes characters with CHARSET. */
+    ChunkedOutput(OutputStream out, int size, Charset charset) {
+        _stream = out;
+        _chars = CharBuffer.allocate(Math.min(size, CHAR_BUFFER_SIZE));
+        _bytes = ByteBuffer.allocate(size);
+        _channel = Channels.newChannel(out);
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** Append C. */
+    void print(char c) {
+        if (!_chars.hasRemaining()) {
+            drain();
+        }
+        _chars.put(c);
+    }
+
+    /** Append the LEN characters of BUF starting at OFF. */
+    void print(char[] buf, int off, int len) {
+        while (len > 0) {
+            if (!_chars.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(len, _chars.remaining());
+            _chars.put(buf, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Append the LEN already-encoded bytes of BUF starting at OFF. */
+    void write(byte[] buf, int off, int len) {
+        drain();
+        while (len > 0) {
+            if (!_bytes.hasRemaining()) {
+                writeBytes();
+            }
+            int n = Math.min(len, _bytes.remaining());
+            _bytes.put(buf, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Append a line separator, as for PrintStream.println. */
+    void println() {
+        for (int i = 0; i < LINE_SEPARATOR.length(); i += 1) {
+            print(LINE_SEPARATOR.charAt(i));
+        }
+    }
+
+    /** Write out everything appended so far. */
+    void flush() {
+        drain();
+        writeBytes();
+        try {
+            _stream.flush();
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Encode the contents of _chars into _bytes, writing _bytes out
+     *  whenever it fills. */
+    private void drain() {
+        _chars.flip();
+        while (true) {
+            CoderResult result = _encoder.encode(_chars, _bytes, false);
+            if (!result.isOverflow()) {
+                break;
+            }
+            writeBytes();
+        }
+        _chars.compact();
+    }
+
+    /** Write out the contents of _bytes. */
+    private void writeBytes() {
+        _bytes.flip();
+        try {
+            while (_bytes.hasRemaining()) {
+                _channel.write(_bytes);
+            }
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+        _bytes.clear();
+    }
+
+    /** Number of characters buffered before encoding. */
+    private static final int CHAR_BUFFER_SIZE = 1 << 16;
+
+    /** Number of bytes buffered before writing. */
+    private static final int BYTE_BUFFER_SIZE = 1 << 20;
+
+    /** Line separator written by println. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Stream I write to. */
+    private final OutputStream _stream;
+
+    /** Channel view of _stream. */
+    private final WritableByteChannel _channel;
+
+    /** Encoder for the default charset. */
+    private final CharsetEncoder _encoder;
+
+    /** Characters not yet encoded. */
+    private final CharBuffer _chars;
+
+    /** Encoded bytes not yet written. */
+    private final ByteBuffer _bytes;
+}
@@ -0,0 +1,89 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** A Scorer that scores a text by its index of coincidence: the chance
+ *  that two of its characters chosen at random are the same, which is
+ *  higher for natural language than for random text.
+ *  @author David Oh
+ */
+class CoincidenceScorer implements Scorer {
+
+    /** A scorer for texts in an alphabet of SIZE characters. */
+    CoincidenceScorer(int size) {
+        _counts = new int[size];
+    }
+
+    @Override
+    public void start(int n) {
+        Arrays.fill(_counts, 0);
+        _length = n;
+        _added = 0;
+        _pairs = 0;
+        _largest = 0;
+    }
+
+    @Override
+    public void add(int c) {
+        int count = _counts[c];
+        _pairs += 2L * count;
+        _counts[c] = count + 1;
+        _largest = Math.max(_largest, count + 1);
+        _added += 1;
+    }
+
+    @Override
+    public double score() {
+        return ratio(_pairs, _added);
+    }
+
+    /** Returns the score the text would have if all its remaining
+     *  characters were copies of its most frequent one, which maximizes
+     *  the number of matching pairs. */
+    @Override
+    public double bound() {
+        long m = _largest;
+        long r = _length - _added;
+        long pairs = _pairs + (m + r) * (m + r - 1) - m * (m - 1);
+        return ratio(pairs, _length);
+    }
+
+    @Override
+    public Scorer copy() {
+        return new CoincidenceScorer(_counts.length);
+    }
+
+    /** Return the index of coincidence of a text of length N whose
+     *  letter frequencies are COUNTS. */
+    static double indexOfCoincidence(int[] counts, int n) {
+        long pairs = 0;
+        for (int count : counts) {
+            pairs += (long) count * (count - 1);
+        }
+        return ratio(pairs, n);
+    }
+
+    /** Return the index of coincidence of a text of length N with PAIRS
+     *  ordered pairs of matching characters. */
+    private static double ratio(long pairs, long n) {
+        if (n < 2) {
+            return 0;
+        }
+        return (double) pairs / ((double) n * (n - 1));
+    }
+
+    /** Number of times each character has been added. */
+    private final int[] _counts;
+
+    /** Length of the text being scored. */
+    private int _length;
+
+    /** Number of characters added so far. */
+    private int _added;
+
+    /** Number of ordered pairs of matching characters added so far. */
+    private long _pairs;
+
+    /** Largest entry of _counts. */
+    private int _largest;
+}
@@ -0,0 +1,237 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** A cache of configuration files compiled to a binary form that holds
+ *  the alphabet, the numbers of slots and pawls, and each rotor's name,
+ *  kind, notches, and permutation as a table.  A compiled configuration
+ *  is stored under the SHA-256 digest of the text it was compiled from,
+ *  so editing a configuration file simply misses the cache, and is
+ *  memory-mapped and decoded without any parsing of cycles.
+ *  @author David Oh
+ */
+class CompiledConfig {
+
+    /** Return a machine configured from the configuration file named
+     *  NAME, using the compiled form of its contents in directory
+     *  CACHEDIR if there is one, and otherwise parsing it and saving its
+     *  compiled form there.  A compiled form that cannot be decoded is
+     *  treated as missing. */
+    static Machine load(String name, String cacheDir) {
+        byte[] text;
+        try {
+            text = Files.readAllBytes(Paths.get(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        Path cached = Paths.get(cacheDir, digest(text) + SUFFIX);
+        if (Files.isRegularFile(cached)) {
+            Machine m = read(cached);
+            if (m != null) {
+                return m;
+            }
+        }
+        Machine m = Main.configure(name);
+        write(m, cached);
+        return m;
+    }
+
+    /** Return the SHA-256 digest of TEXT in hexadecimal. */
+    static String digest(byte[] text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException excp) {
+            throw error("SHA-256 not available");
+        }
+    }
+
+    /** Save the compiled form of M, which must have no rotors inserted,
+     *  in FILE.  The file is written under a temporary name and then
+     *  renamed, so that concurrent runs never see a partial file.
+     *  Failure to save is not an error, since the cache is only an
+     *  optimization. */
+    static void write(Machine m, Path file) {
+        Path temp = null;
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, "enigma", ".tmp");
+            Files.write(temp, encode(m));
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException excp) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (IOException excp) {
+            return;
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException excp) {
+                    /* Ignore. */
+                }
+            }
+        }
+    }
+
+    /** Return the machine compiled into FILE, or null if FILE is not a
+     *  valid compiled configuration. */
+    static Machine read(Path file) {
+        try (FileChannel channel =
+                 FileChannel.open(file, StandardOpenOption.READ)) {
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                      channel.size()));
+        } catch (IOException | BufferUnderflowException
+                 | EnigmaException excp) {
+            return null;
+        }
+    }
+
+    /** Return the compiled form of M. */
+    static byte[] encode(Machine m) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            Alphabet alpha = m.alphabet();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(alpha.isBytes());
+            out.writeInt(alpha.size());
+            for (int i = 0; i < alpha.size(); i += 1) {
+                out.writeChar(alpha.toChar(i));
+            }
+            out.writeInt(m.numRotors());
+            out.writeInt(m.numPawls());
+            out.writeInt(m.allRotors().size());
+            for (Rotor rotor : m.allRotors()) {
+                writeString(out, rotor.name());
+                if (rotor.reflecting()) {
+                    out.writeByte(REFLECTOR);
+                } else if (rotor.rotates()) {
+                    out.writeByte(MOVING);
+                    writeString(out, ((MovingRotor) rotor).notches());
+                } else {
+                    out.writeByte(FIXED);
+                }
+                Permutation perm = rotor.permutation();
+                for (int i = 0; i < alpha.size(); i += 1) {
+                    out.writeInt(perm.permute(i));
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw error("could not compile configuration");
+        }
+    }
+
+    /** Return the machine whose compiled form is IN. */
+    static Machine decode(ByteBuffer in) {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw error("not a compiled configuration");
+        }
+        boolean bytes = in.get() != 0;
+        char[] chars = new char[count(in)];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = in.getChar();
+        }
+        Alphabet alpha =
+            bytes ? Alphabet.bytes() : new Alphabet(new String(chars));
+        int numRotors = in.getInt();
+        int numPawls = in.getInt();
+        int numAvailable = count(in);
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        for (int k = 0; k < numAvailable; k += 1) {
+            String name = readString(in);
+            byte kind = in.get();
+            String notches = kind == MOVING ? readString(in) : null;
+            int[] table = new int[alpha.size()];
+            for (int i = 0; i < table.length; i += 1) {
+                table[i] = in.getInt();
+            }
+            Permutation perm = new Permutation(table, alpha);
+            if (kind == MOVING) {
+                rotors.add(new MovingRotor(name, perm, notches));
+            } else if (kind == FIXED) {
+                rotors.add(new FixedRotor(name, perm));
+            } else if (kind == REFLECTOR) {
+                rotors.add(new Reflector(name, perm));
+            } else {
+                throw error("bad rotor kind in compiled configuration");
+            }
+        }
+        if (in.hasRemaining()) {
+            throw error("trailing data in compiled configuration");
+        }
+        return new Machine(alpha, numRotors, numPawls, rotors);
+    }
+
+    /** Write S to OUT as its length followed by its characters. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    /** Return a string written by writeString, read from IN. */
+    private static String readString(ByteBuffer in) {
+        char[] chars = new char[count(in)];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = in.getChar();
+        }
+        return new String(chars);
+    }
+
+    /** Return a count read from IN, which must not be negative or larger
+     *  than the data left in IN could describe. */
+    private static int count(ByteBuffer in) {
+        int n = in.getInt();
+        if (n < 0 || n > in.remaining()) {
+            throw error("bad count in compiled configuration");
+        }
+        return n;
+    }
+
+    /** Suffix of compiled configuration files. */
+    static final String SUFFIX = ".enigma";
+
+    /** First four bytes of a compiled configuration. */
+    private static final int MAGIC = 0x456e6967;
+
+    /** Version of the compiled format; files of other versions are
+     *  ignored and recompiled. */
+    private static final int VERSION = 2;
+
+    /** Kind byte for a moving rotor. */
+    private static final byte MOVING = 'M';
+
+    /** Kind byte for a non-moving rotor. */
+    private static final byte FIXED = 'N';
+
+    /** Kind byte for a reflector. */
+    private static final byte REFLECTOR = 'R';
+}
@@ -0,0 +1,99 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/** The suite of all JUnit tests for the CompiledConfig class.
+ *  @author David Oh
+ */
+public class CompiledConfigTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private Alphabet alpha = new Alphabet();
+
+    /** Return a machine with the standard naval rotors I, III, IV, Beta
+     *  and B, but no rotors inserted. */
+    private Machine navalMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new MovingRotor("I", new Permutation(
+                "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", alpha),
+                "Q"));
+        rotors.add(new MovingRotor("III", new Permutation(
+                "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)", alpha), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(
+                "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)", alpha), "J"));
+        rotors.add(new FixedRotor("Beta", new Permutation(
+                "(ALBEVFCYODJWUGNMQTZSKPR) (HIX)", alpha)));
+        rotors.add(new Reflector("B", new Permutation(
+                "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) "
+                + "(RX) (SZ) (TV)", alpha)));
+        return new Machine(alpha, 5, 3, rotors);
+    }
+
+    /** Insert the rotors and plugboard of the "AXLE" example into M and
+     *  return it. */
+    private Machine setUp(Machine m) {
+        m.insertRotors(new String[] {"B", "Beta", "III", "IV", "I"});
+        m.setRotors("AXLE");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                       m.alphabet()));
+        return m;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() {
+        byte[] compiled = CompiledConfig.encode(navalMachine());
+        Machine m = CompiledConfig.decode(ByteBuffer.wrap(compiled));
+        assertEquals(5, m.numRotors());
+        assertEquals(3, m.numPawls());
+        assertEquals(5, m.allRotors().size());
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     setUp(m).convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void testTruncatedIsRejected() {
+        byte[] compiled = CompiledConfig.encode(navalMachine());
+        ByteBuffer truncated = ByteBuffer.wrap(compiled, 0,
+                                               compiled.length - 1);
+        try {
+            CompiledConfig.decode(truncated);
+            fail("truncated configuration accepted");
+        } catch (RuntimeException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testDigest() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb924"
+                     + "27ae41e4649b934ca495991b7852b855",
+                     CompiledConfig.digest(new byte[0]));
+    }
+
+    @Test
+    public void testPermutationFromTable() {
+        Alphabet abc = new Alphabet("ABC");
+        Permutation perm = new Permutation(new int[] {2, 0, 1}, abc);
+        assertEquals('C', perm.permute('A'));
+        assertEquals('B', perm.invert('A'));
+        try {
+            new Permutation(new int[] {0, 0, 1}, abc);
+            fail("table with a repeated entry accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+}
@@ -13,6 +13,11 @@ class FixedRotor extends Rotor {
         super(name, perm);
     }
 
+    @Override
+    Rotor duplicate() {
+        return new FixedRotor(name(), permutation());
+    }
+
     @Override
     public String toString() {
         return "Fixed Rotor " + name();
@@ -0,0 +1,442 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static enigma.EnigmaException.*;
+
+/** A search for the keys (rotor order, rotor settings, and plugboard)
+ *  under which a ciphertext decrypts to the most plausible plaintext.
+ *  Every candidate key is tried against the ciphertext.  If a crib (a
+ *  piece of known plaintext at the start of the message) is given, a
+ *  candidate is abandoned as soon as it disagrees with the crib in too
+ *  many places; survivors, or every candidate if there is no crib, are
+ *  ranked by a Scorer of their decryption: by default, its index of
+ *  coincidence.  Once enough candidates are found, a decryption is
+ *  abandoned as soon as its scorer's bound shows it cannot beat them.
+ *  @author David Oh
+ */
+class KeySearch {
+
+    /** A search for the keys of CIPHERTEXT using the alphabet and rotors
+     *  of MACHINE.  Whitespace in CIPHERTEXT is ignored.  By default every
+     *  legal rotor order is tried with an empty plugboard, there is no
+     *  crib, and the best DEFAULT_TOP candidates are reported. */
+    KeySearch(Machine machine, String ciphertext) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _ciphertext = indices(ciphertext);
+        _scorer = new CoincidenceScorer(_alphabet.size());
+        _plugboards.add("");
+    }
+
+    /** Search for keys under which the ciphertext starts with CRIB,
+     *  allowing at most MISMATCHES differences. */
+    void setCrib(String crib, int mismatches) {
+        _crib = indices(crib);
+        if (_crib.length > _ciphertext.length) {
+            throw error("crib is longer than the ciphertext");
+        }
+        _maxMismatches = mismatches;
+    }
+
+    /** Rank decryptions by copies of SCORER instead of by their index of
+     *  coincidence. */
+    void setScorer(Scorer scorer) {
+        _scorer = scorer;
+    }
+
+    /** Report the best TOP candidates. */
+    void setTop(int top) {
+        if (top < 1) {
+            throw error("must report at least one candidate");
+        }
+        _top = top;
+    }
+
+    /** Try only the plugboards whose cycles are given by PLUGBOARDS
+     *  instead of just the empty one. */
+    void setPlugboards(List<String> plugboards) {
+        _plugboards.clear();
+        _plugboards.addAll(plugboards);
+    }
+
+    /** Try only the rotor orders in ORDERS, each naming the reflector
+     *  first, instead of every legal order. */
+    void setRotorOrders(List<String[]> orders) {
+        _orders = new ArrayList<String[]>(orders);
+    }
+
+    /** Return every legal rotor order for my machine: a reflector, then
+     *  distinct non-moving rotors for the slots without pawls, then
+     *  distinct moving rotors for the slots with pawls. */
+    List<String[]> allRotorOrders() {
+        ArrayList<String> reflectors = new ArrayList<String>();
+        ArrayList<String> fixed = new ArrayList<String>();
+        ArrayList<String> moving = new ArrayList<String>();
+        for (Rotor rotor : _machine.allRotors()) {
+            if (rotor.reflecting()) {
+                reflectors.add(rotor.name());
+            } else if (rotor.rotates()) {
+                moving.add(rotor.name());
+            } else {
+                fixed.add(rotor.name());
+            }
+        }
+        ArrayList<String[]> orders = new ArrayList<String[]>();
+        int numFixed = _machine.numRotors() - _machine.numPawls() - 1;
+        for (String reflector : reflectors) {
+            String[] order = new String[_machine.numRotors()];
+            order[0] = reflector;
+            arrange(order, 1, numFixed, fixed, moving, orders);
+        }
+        return orders;
+    }
+
+    /** Fill ORDER from slot K on with distinct rotors, taking the first
+     *  NUMFIXED slots overall from FIXED and the rest from MOVING, and add
+     *  each completed order to ORDERS. */
+    private void arrange(String[] order, int k, int numFixed,
+                         List<String> fixed, List<String> moving,
+                         List<String[]> orders) {
+        if (k == order.length) {
+            orders.add(order.clone());
+            return;
+        }
+        List<String> choices = k <= numFixed ? fixed : moving;
+        for (String name : choices) {
+            boolean used = false;
+            for (int i = 1; i < k; i += 1) {
+                used |= order[i].equals(name);
+            }
+            if (!used) {
+                order[k] = name;
+                arrange(order, k + 1, numFixed, fixed, moving, orders);
+            }
+        }
+    }
+
+    /** Return the best candidates found, best first.  The work is split
+     *  by rotor order, plugboard, and setting of the leftmost rotor, and
+     *  the pieces are run on the common fork/join pool.  The pieces for a
+     *  rotor order share one spec. */
+    List<Candidate> search() {
+        List<String[]> orders = _orders == null ? allRotorOrders() : _orders;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        ArrayList<ForkJoinTask<List<Candidate>>> tasks =
+            new ArrayList<ForkJoinTask<List<Candidate>>>();
+        long perTask = SettingEnumerator.count(_machine) / _alphabet.size();
+        for (String[] order : orders) {
+            Machine template = _machine.copy();
+            template.insertRotors(order);
+            for (String plugboard : _plugboards) {
+                Permutation plug = new Permutation(plugboard, _alphabet);
+                for (int first = 0; first < _alphabet.size(); first += 1) {
+                    Machine machine = template.copy();
+                    machine.setPlugboard(plug);
+                    SettingEnumerator settings =
+                        new SettingEnumerator(machine, first * perTask,
+                                              perTask);
+                    Scorer scorer = _scorer.copy();
+                    tasks.add(pool.submit(() -> searchSettings(
+                        machine, settings, scorer, order, plugboard)));
+                }
+            }
+        }
+        ArrayList<Candidate> all = new ArrayList<Candidate>();
+        for (ForkJoinTask<List<Candidate>> task : tasks) {
+            all.addAll(task.join());
+        }
+        Collections.sort(all, BEST_FIRST);
+        return all.subList(0, Math.min(_top, all.size()));
+    }
+
+    /** Try each of the SETTINGS of M, which has its rotors ORDER and the
+     *  plugboard whose cycles are PLUGBOARD, scoring with SCORER, and
+     *  return the best of them. */
+    private List<Candidate> searchSettings(Machine m,
+                                           SettingEnumerator settings,
+                                           Scorer scorer, String[] order,
+                                           String plugboard) {
+        PriorityQueue<Candidate> best =
+            new PriorityQueue<Candidate>(_top, BEST_FIRST.reversed());
+        while (settings.hasNext()) {
+            int[] setting = settings.next();
+            double worst =
+                best.size() < _top ? REJECTED : best.peek().score();
+            double score = score(m, scorer, worst);
+            if (score != REJECTED && score > worst) {
+                if (best.size() == _top) {
+                    best.poll();
+                }
+                best.add(new Candidate(order, settingString(setting),
+                                       plugboard, score));
+            }
+        }
+        return new ArrayList<Candidate>(best);
+    }
+
+    /** Decrypt my ciphertext with M and return the score SCORER gives
+     *  the result, plus one for each character that agrees with the crib.
+     *  Returns REJECTED if it disagrees with the crib too often, or if it
+     *  turns out partway through that its score cannot exceed WORST. */
+    private double score(Machine m, Scorer scorer, double worst) {
+        scorer.start(_ciphertext.length);
+        int mismatches = 0;
+        int k = 0;
+        if (_crib != null) {
+            for (; k < _crib.length; k += 1) {
+                int c = m.convert(_ciphertext[k]);
+                scorer.add(c);
+                if (c != _crib[k]) {
+                    mismatches += 1;
+                    if (mismatches > _maxMismatches) {
+                        return REJECTED;
+                    }
+                }
+            }
+        }
+        int matches = _crib == null ? 0 : _crib.length - mismatches;
+        while (k < _ciphertext.length) {
+            int end = Math.min(k + PRUNE_INTERVAL, _ciphertext.length);
+            for (; k < end; k += 1) {
+                scorer.add(m.convert(_ciphertext[k]));
+            }
+            if (k < _ciphertext.length && scorer.bound() + matches <= worst) {
+                return REJECTED;
+            }
+        }
+        return scorer.score() + matches;
+    }
+
+    /** Return the characters of SETTING, a rotor setting given as
+     *  indices into my alphabet. */
+    private String settingString(int[] setting) {
+        char[] chars = new char[setting.length];
+        for (int i = 0; i < setting.length; i += 1) {
+            chars[i] = _alphabet.toChar(setting[i]);
+        }
+        return new String(chars);
+    }
+
+    /** Return the indices in my alphabet of the characters of TEXT,
+     *  ignoring whitespace. */
+    private int[] indices(String text) {
+        int[] result = new int[text.length()];
+        int n = 0;
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            result[n] = _alphabet.toInt(c);
+            if (result[n] < 0) {
+                throw error("character %c not in alphabet", c);
+            }
+            n += 1;
+        }
+        return java.util.Arrays.copyOf(result, n);
+    }
+
+    /** Search for the keys of a ciphertext, as specified by ARGS.
+     *  ARGS[0] names a configuration file and ARGS[1] a file containing
+     *  the ciphertext.  Options start with "--" and may appear anywhere:
+     *    --crib=TEXT        Known plaintext at the start of the message.
+     *    --mismatches=N     Differences from the crib allowed (default 0).
+     *    --top=N            Number of candidates to report.
+     *    --plugboard=CYCLES A plugboard to try; may be repeated.
+     *    --order=R,R,...    A rotor order to try, reflector first; may be
+     *                       repeated.
+     *    --ngrams=FILE      Rank by the n-gram counts in FILE (lines of an
+     *                       n-gram and its count) instead of by index of
+     *                       coincidence.
+     *  Prints one candidate per line, best first, as a score followed by
+     *  a settings line.  Exits with code 1 on errors. */
+    public static void main(String... args) {
+        try {
+            ArrayList<String> files = new ArrayList<String>();
+            ArrayList<String> plugboards = new ArrayList<String>();
+            ArrayList<String[]> orders = new ArrayList<String[]>();
+            String crib = null;
+            String ngrams = null;
+            int mismatches = 0;
+            int top = DEFAULT_TOP;
+            for (String arg : args) {
+                if (arg.startsWith("--crib=")) {
+                    crib = arg.substring("--crib=".length());
+                } else if (arg.startsWith("--mismatches=")) {
+                    mismatches = number(arg, "--mismatches=");
+                } else if (arg.startsWith("--top=")) {
+                    top = number(arg, "--top=");
+                } else if (arg.startsWith("--plugboard=")) {
+                    plugboards.add(arg.substring("--plugboard=".length()));
+                } else if (arg.startsWith("--ngrams=")) {
+                    ngrams = arg.substring("--ngrams=".length());
+                } else if (arg.startsWith("--order=")) {
+                    orders.add(arg.substring("--order=".length()).split(","));
+                } else if (arg.startsWith("--")) {
+                    throw error("unknown option %s", arg);
+                } else {
+                    files.add(arg);
+                }
+            }
+            if (files.size() != 2) {
+                throw error("Usage: enigma.KeySearch CONFIG CIPHERTEXT");
+            }
+            Machine machine = Main.configure(files.get(0));
+            KeySearch search = new KeySearch(machine, readFile(files.get(1)));
+            if (ngrams != null) {
+                search.setScorer(NGramScorer.load(ngrams, machine.alphabet()));
+            }
+            if (crib != null) {
+                search.setCrib(crib, mismatches);
+            }
+            if (!plugboards.isEmpty()) {
+                search.setPlugboards(plugboards);
+            }
+            if (!orders.isEmpty()) {
+                search.setRotorOrders(orders);
+            }
+            search.setTop(top);
+            for (Candidate candidate : search.search()) {
+                System.out.printf("%.6f %s%n", candidate.score(), candidate);
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the number following PREFIX in the option ARG. */
+    private static int number(String arg, String prefix) {
+        try {
+            return Integer.parseInt(arg.substring(prefix.length()));
+        } catch (NumberFormatException excp) {
+            throw error("bad number in %s", arg);
+        }
+    }
+
+    /** Return the contents of the file named NAME. */
+    private static String readFile(String name) {
+        try {
+            Scanner input = new Scanner(new File(name));
+            StringBuilder text = new StringBuilder();
+            while (input.hasNextLine()) {
+                text.append(input.nextLine()).append('\n');
+            }
+            return text.toString();
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** A candidate key and the score of the decryption it gives. */
+    static class Candidate {
+
+        /** A candidate with rotors ORDER (reflector first), rotor setting
+         *  SETTING, plugboard cycles PLUGBOARD, and score SCORE. */
+        Candidate(String[] order, String setting, String plugboard,
+                  double score) {
+            _order = order;
+            _setting = setting;
+            _plugboard = plugboard;
+            _score = score;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] order() {
+            return _order;
+        }
+
+        /** Return my rotor setting. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the cycles of my plugboard. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** Return my score; higher is better. */
+        double score() {
+            return _score;
+        }
+
+        /** Returns the settings line that selects my key. */
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder("*");
+            for (String name : _order) {
+                line.append(' ').append(name);
+            }
+            line.append(' ').append(_setting);
+            if (!_plugboard.isEmpty()) {
+                line.append(' ').append(_plugboard);
+            }
+            return line.toString();
+        }
+
+        /** Names of my rotors, reflector first. */
+        private final String[] _order;
+
+        /** My rotor setting. */
+        private final String _setting;
+
+        /** Cycles of my plugboard. */
+        private final String _plugboard;
+
+        /** My score. */
+        private final double _score;
+    }
+
+    /** Orders candidates from best to worst. */
+    private static final Comparator<Candidate> BEST_FIRST =
+        Comparator.comparingDouble(Candidate::score).reversed();
+
+    /** Score of a candidate that disagrees with the crib too often. */
+    private static final double REJECTED = Double.NEGATIVE_INFINITY;
+
+    /** Number of characters decrypted between checks of whether a
+     *  decryption can still beat the worst of the best candidates. */
+    private static final int PRUNE_INTERVAL = 16;
+
+    /** Number of candidates reported unless set otherwise. */
+    static final int DEFAULT_TOP = 10;
+
+    /** Machine supplying my alphabet and rotors. */
+    private final Machine _machine;
+
+    /** Alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** Ciphertext, as indices into the alphabet. */
+    private final int[] _ciphertext;
+
+    /** Crib, as indices into the alphabet, or null if there is none. */
+    private int[] _crib;
+
+    /** Number of differences from the crib allowed. */
+    private int _maxMismatches;
+
+    /** Prototype of the scorer used to rank decryptions. */
+    private Scorer _scorer;
+
+    /** Number of candidates to report. */
+    private int _top = DEFAULT_TOP;
+
+    /** Cycles of each plugboard to try. */
+    private final ArrayList<String> _plugboards = new ArrayList<String>();
+
+    /** Rotor orders to try, or null to try them all. */
+    private List<String[]> _orders;
+}
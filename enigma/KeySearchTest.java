@@ -0,0 +1,82 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author David Oh
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private Alphabet alpha = new Alphabet();
+
+    /** Return a machine with the standard naval rotors I, III, IV, Beta
+     *  and B, but no rotors inserted. */
+    private Machine navalMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new MovingRotor("I", new Permutation(
+                "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", alpha),
+                "Q"));
+        rotors.add(new MovingRotor("III", new Permutation(
+                "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)", alpha), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(
+                "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)", alpha), "J"));
+        rotors.add(new FixedRotor("Beta", new Permutation(
+                "(ALBEVFCYODJWUGNMQTZSKPR) (HIX)", alpha)));
+        rotors.add(new Reflector("B", new Permutation(
+                "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) "
+                + "(RX) (SZ) (TV)", alpha)));
+        return new Machine(alpha, 5, 3, rotors);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testAllRotorOrders() {
+        List<String[]> orders =
+            new KeySearch(navalMachine(), "").allRotorOrders();
+        assertEquals(6, orders.size());
+        for (String[] order : orders) {
+            assertEquals("B", order[0]);
+            assertEquals("Beta", order[1]);
+        }
+    }
+
+    @Test
+    public void testFindsKeyFromCrib() {
+        String plug = "(HQ) (EX) (IP) (TR) (BY)";
+        KeySearch search = new KeySearch(navalMachine(),
+                "QVPQS OKOIL PUBKJ ZPISF XDW");
+        ArrayList<String[]> orders = new ArrayList<String[]>();
+        orders.add(new String[] {"B", "Beta", "III", "IV", "I"});
+        search.setRotorOrders(orders);
+        ArrayList<String> plugboards = new ArrayList<String>();
+        plugboards.add(plug);
+        search.setPlugboards(plugboards);
+        search.setCrib("FROMHISSHOULDER", 0);
+        search.setTop(1);
+        List<KeySearch.Candidate> found = search.search();
+        assertEquals(1, found.size());
+        assertEquals("* B Beta III IV I AXLE " + plug,
+                     found.get(0).toString());
+    }
+
+    @Test
+    public void testIndexOfCoincidence() {
+        assertEquals(1.0, CoincidenceScorer.indexOfCoincidence(
+                new int[] {4, 0, 0}, 4), 1e-9);
+        assertEquals(0.0, CoincidenceScorer.indexOfCoincidence(
+                new int[] {1, 1, 1}, 3), 1e-9);
+    }
+}
@@ -1,11 +1,20 @@
 package enigma;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static enigma.EnigmaException.*;
 
-/** Class that represents a complete enigma machine.
+/** Class that represents a complete enigma machine.  The rotors in its
+ *  slots are compiled into a MachineSpec, and their positions and the
+ *  plugboard are kept in a MachineCursor over it, so that copies of a
+ *  machine, and the workers that convert for it, share its tables.
  *  @author David Oh
  */
 class Machine {
@@ -19,6 +28,57 @@ class Machine {
         _numRotors = numRotors;
         _numPawls = pawls;
         _allRotors = allRotors;
+        _rotorsByName = new HashMap<String, Rotor>();
+        for (Rotor rotor : allRotors) {
+            _rotorsByName.putIfAbsent(rotor.name(), rotor);
+        }
+    }
+
+    /** Return a new machine with the same alphabet, rotors, rotor
+     *  settings, and plugboard as me, but with copies of all my rotors,
+     *  so that it can be used independently of me.  The copy shares my
+     *  spec, and the specs it and I compile are shared between us. */
+    Machine copy() {
+        syncRotors();
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        for (Rotor rotor : _allRotors) {
+            rotors.add(rotor.copy());
+        }
+        Machine result = new Machine(_alphabet, _numRotors, _numPawls, rotors);
+        if (_rotorSlots != null) {
+            result._rotorSlots = new ArrayList<Rotor>();
+            for (Rotor rotor : _rotorSlots) {
+                result._rotorSlots.add(result._rotorsByName.get(rotor.name()));
+            }
+            result._cursor = _cursor.copy();
+        }
+        result._plugboard = _plugboard;
+        result._specs = _specs;
+        return result;
+    }
+
+    /** Return the spec of my inserted rotors, which does not change as I
+     *  convert.  My rotors must be inserted. */
+    MachineSpec spec() {
+        return _cursor.spec();
+    }
+
+    /** Return a new cursor over spec() in my current state, which
+     *  changes independently of me. */
+    MachineCursor cursor() {
+        return _cursor.copy();
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return all the rotors available to me, with the settings of
+     *  those in my slots brought up to date. */
+    Collection<Rotor> allRotors() {
+        syncRotors();
+        return _allRotors;
     }
 
     /** Return the number of rotor slots I have. */
@@ -33,21 +93,22 @@ class Machine {
 
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
-     *  Initially, all rotors are set at their 0 setting. */
+     *  Initially, all rotors are set at their 0 setting.  Inserting the
+     *  rotors already in my slots, in the same order, does nothing, so
+     *  that a machine reused for settings with the same rotors keeps its
+     *  spec and the tables cached in it. */
     void insertRotors(String[] rotors) {
+        if (holds(rotors)) {
+            return;
+        }
         _rotorSlots = new ArrayList<Rotor>();
         for (String rotorToUse : rotors) {
-            boolean rotorContained = false;
-            for (Rotor availableRotor : _allRotors) {
-                if (availableRotor.name().equals(rotorToUse)) {
-                    _rotorSlots.add(availableRotor);
-                    rotorContained = true;
-                }
-            }
-            if (!rotorContained) {
+            Rotor availableRotor = _rotorsByName.get(rotorToUse);
+            if (availableRotor == null) {
                 throw new EnigmaException("Rotor from input not "
                         + "contained in available rotors from machine.");
             }
+            _rotorSlots.add(availableRotor);
         }
         if (!_rotorSlots.get(0).reflecting()
                 || _rotorSlots.get(0).rotates()) {
@@ -57,6 +118,52 @@ class Machine {
         if (!_rotorSlots.get(_rotorSlots.size() - 1).rotates()) {
             throw new EnigmaException("Rightmost rotor must rotate.");
         }
+        compile();
+    }
+
+    /** Returns true iff my slots hold, in order, the rotors named ROTORS
+     *  and they have been compiled. */
+    private boolean holds(String[] rotors) {
+        if (_cursor == null || rotors.length != _rotorSlots.size()) {
+            return false;
+        }
+        for (int i = 0; i < rotors.length; i += 1) {
+            if (_rotorsByName.get(rotors[i]) != _rotorSlots.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Compile the rotors in my slots into a spec, and start a cursor
+     *  over it with my plugboard and with the rotors at their current
+     *  settings.  A spec already compiled by me or a copy of me for the
+     *  same rotors with the same ring settings is used instead, so that
+     *  copies converting with the same rotors compile them only once. */
+    private void compile() {
+        StringBuilder key = new StringBuilder();
+        for (Rotor rotor : _rotorSlots) {
+            key.append(rotor.name()).append(' ').append(rotor.ring())
+                .append(' ');
+        }
+        MachineSpec spec = _specs.get(key.toString());
+        if (spec == null) {
+            spec = new MachineSpec(_alphabet, _rotorSlots);
+            if (_specs.size() >= MAX_SPECS) {
+                _specs.clear();
+            }
+            _specs.put(key.toString(), spec);
+        }
+        _cursor = new MachineCursor(spec);
+        int[] posns = new int[_rotorSlots.size() - 1];
+        for (int i = 0; i < posns.length; i += 1) {
+            posns[i] = _rotorSlots.get(i + 1).setting();
+        }
+        _cursor.setRotors(posns);
+        if (_plugboard != null) {
+            _cursor.setPlugboard(_plugboard);
+        }
+        _rotorsStale = false;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -67,62 +174,371 @@ class Machine {
             throw new EnigmaException("Settings length does not "
                     + "match the number of available rotors.");
         }
+        int[] posns = new int[setting.length()];
         for (int i = 0; i < setting.length(); i += 1) {
-            _rotorSlots.get(i + 1).set(setting.charAt(i));
+            Rotor rotor = _rotorSlots.get(i + 1);
+            rotor.set(setting.charAt(i));
+            posns[i] = rotor.setting();
+        }
+        _cursor.setRotors(posns);
+    }
+
+    /** Set my rotors according to SETTING, which must hold the indices in
+     *  my alphabet of the numRotors()-1 rotor settings, leftmost first
+     *  (not counting the reflector).  Setting only the rightmost rotor
+     *  keeps the rest of the rotor stack table. */
+    void setRotors(int[] setting) {
+        if (setting.length != numRotors() - 1) {
+            throw new EnigmaException("Settings length does not "
+                    + "match the number of available rotors.");
+        }
+        for (int posn : setting) {
+            if (posn < 0 || posn >= _alphabet.size()) {
+                throw new EnigmaException("Setting characters "
+                        + "not found in alphabet.");
+            }
+        }
+        _cursor.setRotors(setting);
+        _rotorsStale = true;
+    }
+
+    /** Set the ring settings of my rotors according to RINGS, which must
+     *  be a string of numRotors()-1 characters in my alphabet, leftmost
+     *  first (not counting the reflector). */
+    void setRing(String rings) {
+        if (rings.length() != numRotors() - 1) {
+            throw new EnigmaException("Ring setting length does not "
+                    + "match the number of available rotors.");
+        }
+        int[] ring = new int[rings.length()];
+        for (int i = 0; i < ring.length; i += 1) {
+            ring[i] = _alphabet.toInt(rings.charAt(i));
+            if (ring[i] < 0) {
+                throw new EnigmaException("Ring setting characters "
+                        + "not found in alphabet.");
+            }
+        }
+        setRing(ring);
+    }
+
+    /** Set the ring settings of my rotors according to RINGS, which holds
+     *  indices in my alphabet, leftmost first (not counting the
+     *  reflector).  A rotor with ring setting R at position P converts as
+     *  it would with ring setting 0 at position P - R, but its notches
+     *  stay where they are.  Rotors are inserted with the ring settings
+     *  they last had.  Changing them compiles a new spec. */
+    void setRing(int[] rings) {
+        if (rings.length != numRotors() - 1) {
+            throw new EnigmaException("Ring setting length does not "
+                    + "match the number of available rotors.");
+        }
+        boolean changed = false;
+        syncRotors();
+        for (int i = 0; i < rings.length; i += 1) {
+            Rotor rotor = _rotorSlots.get(i + 1);
+            if (rotor.ring() != rings[i]) {
+                rotor.setRing(rings[i]);
+                changed = true;
+            }
+        }
+        if (changed) {
+            compile();
         }
     }
 
-    /** Set the plugboard to PLUGBOARD. */
+    /** Set the plugboard to PLUGBOARD.  Setting the plugboard I already
+     *  have does nothing. */
     void setPlugboard(Permutation plugboard) {
+        if (plugboard == _plugboard) {
+            return;
+        }
         _plugboard = plugboard;
+        if (_cursor != null) {
+            _cursor.setPlugboard(plugboard);
+        }
     }
 
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
-        int last = numRotors() - 1;
-        _rotorSlots.get(last).setToWillRotate();
-        for (int i = 1; i < last; i += 1) {
-            if (_rotorSlots.get(i).rotates()
-                    && _rotorSlots.get(i + 1).atNotch()) {
-                _rotorSlots.get(i).setToWillRotate();
-            } else if (_rotorSlots.get(i).atNotch()
-                    && _rotorSlots.get(i - 1).rotates()) {
-                _rotorSlots.get(i).setToWillRotate();
+        _rotorsStale = true;
+        return _cursor.convert(c);
+    }
+
+    /** Bring the settings of the Rotor objects in my slots up to date
+     *  with the positions in my cursor. */
+    private void syncRotors() {
+        if (_rotorsStale) {
+            for (int i = 1; i < _numRotors; i += 1) {
+                _rotorSlots.get(i).set(_cursor.position(i));
             }
+            _rotorsStale = false;
         }
-        for (Rotor rotor : _rotorSlots) {
-            if (rotor.getWillRotate()) {
-                rotor.advance();
-                rotor.resetWillRotate();
+    }
+
+    /** Return the conversions of the messages MSGS, where MSGS[k] is
+     *  converted as a copy of me would convert it after setRotors(
+     *  SETTINGS[k]) and setPlugboard(PLUGBOARDS[k]).  Each message is
+     *  converted by its own cursor over my spec, so my own state is not
+     *  changed.  Large batches are split into pieces converted
+     *  concurrently, and each piece is converted with VectorLanes when
+     *  the jdk.incubator.vector module is present. */
+    String[] convertBatch(String[] settings, Permutation[] plugboards,
+                          CharSequence[] msgs) {
+        return convertBatch(settings, plugboards, msgs, VECTOR_LANES);
+    }
+
+    /** As for convertBatch(SETTINGS, PLUGBOARDS, MSGS), but converting
+     *  with VectorLanes iff VECTOR, which requires that VECTOR_LANES be
+     *  true. */
+    String[] convertBatch(String[] settings, Permutation[] plugboards,
+                          CharSequence[] msgs, boolean vector) {
+        if (vector && !VECTOR_LANES) {
+            throw error("the jdk.incubator.vector module is not present");
+        }
+        int lanes = msgs.length;
+        if (settings.length != lanes || plugboards.length != lanes) {
+            throw error("batch arrays differ in length");
+        }
+        MachineCursor[] cursors = new MachineCursor[lanes];
+        char[][] text = new char[lanes][];
+        for (int k = 0; k < lanes; k += 1) {
+            if (settings[k].length() != numRotors() - 1) {
+                throw new EnigmaException("Settings length does not "
+                        + "match the number of available rotors.");
+            }
+            int[] setting = new int[numRotors() - 1];
+            for (int i = 0; i < setting.length; i += 1) {
+                setting[i] = _alphabet.toInt(settings[k].charAt(i));
+                if (setting[i] < 0) {
+                    throw new EnigmaException("Setting characters "
+                            + "not found in alphabet.");
+                }
+            }
+            cursors[k] = new MachineCursor(spec());
+            cursors[k].setRotors(setting);
+            cursors[k].setPlugboard(plugboards[k]);
+            text[k] = new char[msgs[k].length()];
+            for (int j = 0; j < text[k].length; j += 1) {
+                int index = _alphabet.toInt(msgs[k].charAt(j));
+                if (index < 0) {
+                    throw error("Message contains characters not found "
+                            + "in alphabet.");
+                }
+                text[k][j] = (char) index;
+            }
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int workers = CHUNKS_PER_WORKER * pool.getParallelism();
+        int piece = Math.max(MIN_BATCH_PIECE, lanes / workers);
+        if (lanes <= piece) {
+            convertLanes(text, cursors, 0, lanes, vector);
+        } else {
+            ArrayList<ForkJoinTask<?>> tasks =
+                new ArrayList<ForkJoinTask<?>>();
+            for (int start = 0; start < lanes; start += piece) {
+                int from = start;
+                int to = Math.min(lanes, start + piece);
+                tasks.add(pool.submit(() -> convertLanes(
+                    text, cursors, from, to, vector)));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+        String[] result = new String[lanes];
+        for (int k = 0; k < lanes; k += 1) {
+            char[] lane = text[k];
+            for (int j = 0; j < lane.length; j += 1) {
+                lane[j] = _alphabet.toChar(lane[j]);
+            }
+            result[k] = new String(lane);
+        }
+        return result;
+    }
+
+    /** Convert messages FROM .. TO-1 of TEXT, whose characters are given
+     *  as alphabet indices and are replaced by their conversions, where
+     *  message K is converted by CURSORS[K].  Uses VectorLanes iff
+     *  VECTOR, and otherwise convertLanes(TEXT, CURSORS, FROM, TO). */
+    private static void convertLanes(char[][] text, MachineCursor[] cursors,
+                                     int from, int to, boolean vector) {
+        if (vector) {
+            VectorLanes.convert(text, cursors, from, to);
+        } else {
+            convertLanes(text, cursors, from, to);
+        }
+    }
+
+    /** Convert messages FROM .. TO-1 of TEXT, whose characters are given
+     *  as alphabet indices and are replaced by their conversions, where
+     *  message K is converted by CURSORS[K].  A few messages at a time
+     *  are converted in lockstep, one character of each in turn, so that
+     *  their state stays in the fastest cache while they share my spec's
+     *  tables. */
+    private static void convertLanes(char[][] text, MachineCursor[] cursors,
+                                     int from, int to) {
+        for (int group = from; group < to; group += BATCH_GROUP) {
+            int end = Math.min(to, group + BATCH_GROUP);
+            int groupLongest = 0;
+            for (int k = group; k < end; k += 1) {
+                groupLongest = Math.max(groupLongest, text[k].length);
+            }
+            for (int j = 0; j < groupLongest; j += 1) {
+                for (int k = group; k < end; k += 1) {
+                    char[] lane = text[k];
+                    if (j < lane.length) {
+                        lane[j] = (char) cursors[k].convert(lane[j]);
+                    }
+                }
             }
         }
-        int result = _plugboard.permute(c);
-        int i = numRotors() - 1;
-        while (i > 0 || !_rotorSlots.get(i).reflecting()) {
-            result = _rotorSlots.get(i).convertForward(result);
-            i -= 1;
+    }
+
+    /** Returns the encoding/decoding of MSG, updating the state of the
+     *  rotors accordingly, exactly as convert(MSG) would, but converting
+     *  pieces of a long MSG concurrently. */
+    String convertParallel(CharSequence msg) {
+        char[] chars = new char[msg.length()];
+        for (int i = 0; i < chars.length; i += 1) {
+            chars[i] = msg.charAt(i);
         }
-        while (i < numRotors()) {
-            result = _rotorSlots.get(i).convertBackward(result);
-            i += 1;
+        convertParallel(chars, 0, chars.length, chars, 0);
+        return new String(chars);
+    }
+
+    /** Convert the LEN characters of IN starting at OFF into OUT starting
+     *  at OUTOFF, exactly as convert(IN, OFF, LEN, OUT, OUTOFF) would, but
+     *  concurrently if LEN is large.  Each piece is converted by a cursor
+     *  over my spec skipped ahead to the piece's offset, and my own rotors are
+     *  then skipped past the whole range.  If any character is not in my
+     *  alphabet, throws an EnigmaException and leaves my rotors as they
+     *  were. */
+    void convertParallel(char[] in, int off, int len, char[] out,
+                         int outOff) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunk = Math.max(MIN_PARALLEL_CHUNK,
+                             len / (CHUNKS_PER_WORKER * pool.getParallelism()));
+        if (len <= chunk) {
+            convert(in, off, len, out, outOff);
+            return;
+        }
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (int start = 0; start < len; start += chunk) {
+            int from = start;
+            int count = Math.min(chunk, len - start);
+            MachineCursor worker = _cursor.copy();
+            tasks.add(pool.submit(() -> {
+                worker.skip(from);
+                worker.convert(in, off + from, count, out, outOff + from);
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        skip(len);
+    }
+
+    /** Advance my rotors to where they would be after converting N more
+     *  characters, without converting anything. */
+    void skip(long n) {
+        _cursor.skip(n);
+        _rotorsStale = true;
+        syncRotors();
+    }
+
+    /** Return the setting of my rotors, in the form taken by setRotors,
+     *  that they would have after converting N more characters.  Does
+     *  not change my state. */
+    String positionAt(long n) {
+        int[] posns = _cursor.positionsAfter(n);
+        char[] setting = new char[numRotors() - 1];
+        for (int i = 1; i < numRotors(); i += 1) {
+            setting[i - 1] = _alphabet.toChar(posns[i]);
         }
-        return _plugboard.permute(result);
+        return new String(setting);
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String result = "";
-        for (int c = 0; c < msg.length(); c += 1) {
-            char letter = msg.charAt(c);
-            int indexOfLetter = _alphabet.toInt(letter);
-            int newIndex = convert(indexOfLetter);
-            char newLetter = _alphabet.toChar(newIndex);
-            result += newLetter;
+        char[] chars = msg.toCharArray();
+        convert(chars, 0, chars.length, chars, 0);
+        return new String(chars);
+    }
+
+    /** Convert the LEN characters of IN starting at OFF, storing the
+     *  results in OUT starting at OUTOFF and updating the state of the
+     *  rotors accordingly.  IN and OUT may be the same array. */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        _rotorsStale = true;
+        _cursor.convert(in, off, len, out, outOff);
+        syncRotors();
+    }
+
+    /** Convert as many characters remaining in IN as fit in the space
+     *  remaining in OUT, advancing the positions of both buffers and
+     *  updating the state of the rotors accordingly. */
+    void convert(CharBuffer in, CharBuffer out) {
+        int len = Math.min(in.remaining(), out.remaining());
+        if (in.hasArray() && out.hasArray()) {
+            convert(in.array(), in.arrayOffset() + in.position(), len,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+            return;
+        }
+        for (int k = 0; k < len; k += 1) {
+            int index = _alphabet.toInt(in.get());
+            if (index < 0) {
+                throw error("Message contains characters not found "
+                        + "in alphabet.");
+            }
+            out.put(_alphabet.toChar(convert(index)));
+        }
+        syncRotors();
+    }
+
+    /** Convert the LEN bytes of IN starting at OFF, storing the results
+     *  in OUT starting at OUTOFF and updating the state of the rotors
+     *  accordingly.  My alphabet must be the byte alphabet, whose indices
+     *  are the byte values themselves.  IN and OUT may be the same
+     *  array. */
+    void convert(byte[] in, int off, int len, byte[] out, int outOff) {
+        checkBytes();
+        for (int k = 0; k < len; k += 1) {
+            out[outOff + k] = (byte) convert(in[off + k] & BYTE_MASK);
+        }
+        syncRotors();
+    }
+
+    /** Convert as many bytes remaining in IN as fit in the space
+     *  remaining in OUT, advancing the positions of both buffers and
+     *  updating the state of the rotors accordingly.  My alphabet must be
+     *  the byte alphabet. */
+    void convert(ByteBuffer in, ByteBuffer out) {
+        int len = Math.min(in.remaining(), out.remaining());
+        if (in.hasArray() && out.hasArray() && !out.isReadOnly()) {
+            convert(in.array(), in.arrayOffset() + in.position(), len,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+            return;
+        }
+        checkBytes();
+        for (int k = 0; k < len; k += 1) {
+            out.put((byte) convert(in.get() & BYTE_MASK));
+        }
+        syncRotors();
+    }
+
+    /** Throw an exception unless my alphabet is the byte alphabet. */
+    private void checkBytes() {
+        if (!_alphabet.isBytes()) {
+            throw error("bytes can only be converted with the byte "
+                        + "alphabet");
         }
-        return result;
     }
 
     /** Common alphabet of my rotors. */
@@ -137,9 +553,55 @@ class Machine {
     /** Collection of all possible rotors. */
     private Collection<Rotor> _allRotors;
 
+    /** The rotors of _allRotors, indexed by name. */
+    private HashMap<String, Rotor> _rotorsByName;
+
     /** Array of rotors in machine. */
     private ArrayList<Rotor> _rotorSlots;
 
+    /** Positions of the rotors in my slots and my plugboard table.  The
+     *  positions, rather than the settings of the Rotor objects, are
+     *  updated as I convert; the Rotor objects are brought up to date by
+     *  syncRotors. */
+    private MachineCursor _cursor;
+
+    /** True iff the Rotor objects in my slots are behind _cursor. */
+    private boolean _rotorsStale;
+
     /** Instance variable for plugboard. */
     private Permutation _plugboard;
+
+    /** Specs compiled by me and my copies, keyed by the names and ring
+     *  settings of the rotors in their slots.  Emptied when it reaches
+     *  MAX_SPECS. */
+    private ConcurrentHashMap<String, MachineSpec> _specs =
+        new ConcurrentHashMap<String, MachineSpec>();
+
+    /** Number of specs _specs may hold. */
+    private static final int MAX_SPECS = 8;
+
+    /** Smallest number of characters worth converting as a separate
+     *  piece in convertParallel. */
+    private static final int MIN_PARALLEL_CHUNK = 1 << 16;
+
+    /** Number of pieces per worker thread that convertParallel aims to
+     *  split a long message into. */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /** Smallest number of messages worth converting as a separate piece
+     *  in convertBatch. */
+    private static final int MIN_BATCH_PIECE = 256;
+
+    /** True iff the jdk.incubator.vector module is present, so that
+     *  convertBatch may use VectorLanes.  Otherwise it converts with
+     *  scalar table lookups. */
+    static final boolean VECTOR_LANES =
+        ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /** Number of messages convertBatch converts in lockstep at a time,
+     *  small enough that their state stays in the fastest cache. */
+    private static final int BATCH_GROUP = 8;
+
+    /** Mask selecting the value of a byte as an index. */
+    private static final int BYTE_MASK = 0xff;
 }
@@ -0,0 +1,163 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The moving part of an enigma machine: the positions of its rotors
+ *  and the plugboard in use, over a shared MachineSpec.  The plugboard is
+ *  folded into the spec's rightmost rotor tables, so a keypress makes
+ *  three table lookups.  A cursor is
+ *  small and cheap to make, so each thread or request can have its own,
+ *  while any number of cursors share one spec and its tables.
+ *  @author David Oh
+ */
+final class MachineCursor {
+
+    /** A cursor over SPEC with its rotors at SPEC's initial positions
+     *  and no plugboard connections. */
+    MachineCursor(MachineSpec spec) {
+        _spec = spec;
+        _posn = spec.initialPositions();
+        _last = _posn.length - 1;
+        int[] plug = new int[spec.alphabet().size()];
+        for (int p = 0; p < plug.length; p += 1) {
+            plug[p] = p;
+        }
+        usePlugged(spec.plugged(plug));
+    }
+
+    /** A cursor over SPEC with its rotors at positions POSN, reflector
+     *  first, which it takes over, converting with the rightmost rotor
+     *  tables of FORWARD and BACKWARD. */
+    private MachineCursor(MachineSpec spec, int[] posn, int[][] forward,
+                          int[][] backward) {
+        _spec = spec;
+        _posn = posn;
+        _last = posn.length - 1;
+        _forward = forward;
+        _backward = backward;
+    }
+
+    /** Return a cursor over my spec in the same state as me that changes
+     *  independently of me. */
+    MachineCursor copy() {
+        return new MachineCursor(_spec, _posn.clone(), _forward, _backward);
+    }
+
+    /** Return my spec. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Return the position of the rotor in slot I, where slot 0 holds the
+     *  reflector. */
+    int position(int i) {
+        return _posn[i];
+    }
+
+    /** Set my rotors according to SETTING, which holds the indices in my
+     *  alphabet of the numRotors()-1 rotor settings, leftmost first (not
+     *  counting the reflector).  Setting only the rightmost rotor keeps
+     *  the rest of the rotor stack table. */
+    void setRotors(int[] setting) {
+        if (setting.length != _last) {
+            throw new EnigmaException("Settings length does not "
+                    + "match the number of available rotors.");
+        }
+        for (int i = 0; i < setting.length; i += 1) {
+            if (_posn[i + 1] != setting[i]) {
+                _posn[i + 1] = setting[i];
+                if (i + 1 < _last) {
+                    _inner = null;
+                }
+            }
+        }
+    }
+
+    /** Set the plugboard to PLUGBOARD. */
+    void setPlugboard(Permutation plugboard) {
+        int[] plug = new int[_spec.alphabet().size()];
+        for (int p = 0; p < plug.length; p += 1) {
+            plug[p] = plugboard.permute(p);
+        }
+        usePlugged(_spec.plugged(plug));
+    }
+
+    /** Convert with the rightmost rotor tables of PLUGGED. */
+    private void usePlugged(MachineSpec.Plugged plugged) {
+        _forward = plugged.forward();
+        _backward = plugged.backward();
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1), after first advancing
+     *  the rotors. */
+    int convert(int c) {
+        if (_spec.step(_posn) || _inner == null) {
+            _inner = _spec.innerTable(_posn);
+        }
+        int fast = _posn[_last];
+        return _backward[fast][_inner[_forward[fast][c]]];
+    }
+
+    /** Return my plugboard-then-rightmost-rotor table, indexed by the
+     *  rotor's position and then by contact.  Must not be modified. */
+    int[][] forward() {
+        return _forward;
+    }
+
+    /** Return my rightmost-rotor-inverse-then-plugboard table, indexed
+     *  like forward(). */
+    int[][] backward() {
+        return _backward;
+    }
+
+    /** Convert the LEN characters of IN starting at OFF, storing the
+     *  results in OUT starting at OUTOFF and advancing the rotors
+     *  accordingly.  IN and OUT may be the same array. */
+    void convert(char[] in, int off, int len, char[] out, int outOff) {
+        Alphabet alphabet = _spec.alphabet();
+        for (int k = 0; k < len; k += 1) {
+            int index = alphabet.toInt(in[off + k]);
+            if (index < 0) {
+                throw error("Message contains characters not found "
+                        + "in alphabet.");
+            }
+            out[outOff + k] = alphabet.toChar(convert(index));
+        }
+    }
+
+    /** Return the positions of my rotor slots, reflector first, that
+     *  they would have after converting N more characters.  Does not
+     *  change my state. */
+    int[] positionsAfter(long n) {
+        return _spec.positionsAfter(_posn, n);
+    }
+
+    /** Advance my rotors to where they would be after converting N more
+     *  characters, without converting anything. */
+    void skip(long n) {
+        _posn = positionsAfter(n);
+        _inner = null;
+    }
+
+    /** Spec of the machine I am a state of. */
+    private final MachineSpec _spec;
+
+    /** Positions of the rotors in my spec's slots, reflector first. */
+    private int[] _posn;
+
+    /** Index of the rightmost rotor slot. */
+    private final int _last;
+
+    /** The plugboard, then the rightmost rotor, indexed by the rotor's
+     *  position and then by the contact entered.  Shared with the spec
+     *  and never modified. */
+    private int[][] _forward;
+
+    /** The rightmost rotor's inverse, then the plugboard, indexed like
+     *  _forward. */
+    private int[][] _backward;
+
+    /** Rotor stack table for _posn, or null if it must be looked up. */
+    private int[] _inner;
+}
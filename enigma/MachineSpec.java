@@ -0,0 +1,390 @@
+package enigma;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static enigma.EnigmaException.*;
+
+/** The fixed part of an enigma machine with its rotors inserted: the
+ *  wiring, ring settings, and notches of the rotors in its slots,
+ *  compiled into tables.  A spec never changes once made, so any number
+ *  of threads may share one, each converting with its own MachineCursor.
+ *  The only state a spec keeps is caches of rotor stack tables and of
+ *  rightmost rotor tables with plugboards folded in, which are functions
+ *  of the rotor positions and plugboards and so may be shared freely.
+ *  @author David Oh
+ */
+final class MachineSpec {
+
+    /** The spec of a machine with alphabet ALPHA whose slots hold SLOTS,
+     *  reflector first, with their current wiring, ring settings, and
+     *  notches.  The rotors' current settings become my initial
+     *  positions.  Later changes to the rotors do not affect me. */
+    MachineSpec(Alphabet alpha, List<Rotor> slots) {
+        int n = slots.size();
+        int size = alpha.size();
+        _alphabet = alpha;
+        _last = n - 1;
+        _initial = new int[n];
+        _rotates = new boolean[n];
+        _stepping = new int[n][size];
+        _slotForward = new int[n][size];
+        _slotBackward = new int[n][size];
+        for (int i = 0; i < n; i += 1) {
+            _initial[i] = slots.get(i).setting();
+            _rotates[i] = slots.get(i).rotates();
+        }
+        for (int i = 0; i < n; i += 1) {
+            Rotor rotor = slots.get(i);
+            for (int p = 0; p < size; p += 1) {
+                int next = p;
+                if (_rotates[i]) {
+                    next = p + 1 == size ? 0 : p + 1;
+                }
+                boolean carries = i > 0 && _rotates[i - 1]
+                    && rotor.notchAt(p);
+                _stepping[i][p] = (next << 1) | (carries ? 1 : 0);
+            }
+            loadSlot(i, rotor);
+        }
+        _fastNotchDistance = new int[size];
+        for (int p = 0; p < size; p += 1) {
+            _fastNotchDistance[p] = slots.get(_last).notchDistance(p);
+        }
+        _fastForward = new int[size][size];
+        _fastBackward = new int[size][size];
+        for (int posn = 0; posn < size; posn += 1) {
+            for (int p = 0; p < size; p += 1) {
+                _fastForward[posn][p] = through(_slotForward[_last], posn, p);
+                _fastBackward[posn][p] =
+                    through(_slotBackward[_last], posn, p);
+            }
+        }
+        boolean cacheable = true;
+        long keys = 1;
+        for (int i = 1; i < _last; i += 1) {
+            if (keys > Long.MAX_VALUE / size) {
+                cacheable = false;
+            }
+            keys *= size;
+        }
+        _innerCache = cacheable ? new ConcurrentHashMap<Long, int[]>() : null;
+        _innerCacheSize = Math.max(MIN_INNER_CACHE_SIZE,
+                                   INNER_CACHE_ENTRIES / size);
+        _unplugged = new Plugged(_fastForward, _fastBackward);
+    }
+
+    /** Fill the permutation tables of slot I from ROTOR, shifting them by
+     *  its ring setting so that through() need only know the rotor's
+     *  position. */
+    private void loadSlot(int i, Rotor rotor) {
+        Permutation perm = rotor.permutation();
+        int size = _alphabet.size();
+        int ring = rotor.ring();
+        for (int p = 0; p < size; p += 1) {
+            int contact = Math.floorMod(p - ring, size);
+            _slotForward[i][p] = (perm.permute(contact) + ring) % size;
+            _slotBackward[i][p] = (perm.invert(contact) + ring) % size;
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of my rotor slots, counting the reflector. */
+    int numRotors() {
+        return _last + 1;
+    }
+
+    /** Return a new array of the positions of my rotor slots when I was
+     *  made, reflector first. */
+    int[] initialPositions() {
+        return _initial.clone();
+    }
+
+    /** Return the tables of my rightmost rotor with the plugboard whose
+     *  table is PLUG folded in: the forward table applies PLUG before the
+     *  rotor and the backward table applies it after, so that a keypress
+     *  converts C at rightmost position F with INNER as
+     *  backward[F][INNER[forward[F][C]]].  Tables are cached by
+     *  plugboard, so settings that reuse a plugboard cost only a lookup.
+     *  The result must not be modified. */
+    Plugged plugged(int[] plug) {
+        char[] chars = new char[plug.length];
+        boolean identity = true;
+        for (int p = 0; p < plug.length; p += 1) {
+            chars[p] = (char) plug[p];
+            identity &= plug[p] == p;
+        }
+        if (identity) {
+            return _unplugged;
+        }
+        String key = new String(chars);
+        Plugged result = _pluggedCache.get(key);
+        if (result == null) {
+            int size = plug.length;
+            int[][] forward = new int[size][size];
+            int[][] backward = new int[size][size];
+            for (int posn = 0; posn < size; posn += 1) {
+                for (int p = 0; p < size; p += 1) {
+                    forward[posn][p] = _fastForward[posn][plug[p]];
+                    backward[posn][p] = plug[_fastBackward[posn][p]];
+                }
+            }
+            result = new Plugged(forward, backward);
+            if (_pluggedCache.size() >= PLUGGED_CACHE_SIZE) {
+                _pluggedCache.clear();
+            }
+            _pluggedCache.put(key, result);
+        }
+        return result;
+    }
+
+    /** Return the contact at which a signal entering contact P of a rotor
+     *  at position POSN leaves it, where TABLE is the rotor's permutation
+     *  (or its inverse) at position 0. */
+    private int through(int[] table, int posn, int p) {
+        int size = table.length;
+        int entered = p + posn;
+        if (entered >= size) {
+            entered -= size;
+        }
+        int exited = table[entered] - posn;
+        if (exited < 0) {
+            exited += size;
+        }
+        return exited;
+    }
+
+    /** Return the composite permutation applied by every rotor other than
+     *  the rightmost one (through the reflector and back) when my rotor
+     *  slots are at positions POSNS, reusing a cached table if those
+     *  positions have been seen before.  The result must not be
+     *  modified. */
+    int[] innerTable(int[] posns) {
+        long key = 0;
+        if (_innerCache != null) {
+            for (int i = 1; i < _last; i += 1) {
+                key = key * _alphabet.size() + posns[i];
+            }
+            int[] cached = _innerCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        int[] table = new int[_alphabet.size()];
+        for (int p = 0; p < table.length; p += 1) {
+            int result = p;
+            for (int i = _last - 1; i > 0; i -= 1) {
+                result = through(_slotForward[i], posns[i], result);
+            }
+            for (int i = 0; i < _last; i += 1) {
+                result = through(_slotBackward[i], posns[i], result);
+            }
+            table[p] = result;
+        }
+        if (_innerCache != null) {
+            if (_innerCache.size() >= _innerCacheSize) {
+                _innerCache.clear();
+            }
+            _innerCache.put(key, table);
+        }
+        return table;
+    }
+
+    /** Return the positions of my rotor slots after N more keypresses
+     *  from positions POSNS, which are not changed.  Runs of keypresses
+     *  that move only the rightmost rotor are taken in a single jump, and
+     *  once a state recurs the remaining count is reduced modulo the
+     *  period of the rotors. */
+    int[] positionsAfter(int[] posns, long n) {
+        if (n < 0) {
+            throw error("cannot skip a negative number of characters");
+        }
+        int last = _last;
+        int size = _alphabet.size();
+        int[] result = posns.clone();
+        HashMap<Long, Long> seen = null;
+        if (Math.pow(size, last) < Long.MAX_VALUE) {
+            seen = new HashMap<Long, Long>();
+        }
+        long done = 0;
+        while (n > 0) {
+            long quiet = Math.min(quietKeypresses(result), n);
+            if (quiet > 0) {
+                result[last] = (int) ((result[last] + quiet) % size);
+                n -= quiet;
+                done += quiet;
+                continue;
+            }
+            step(result);
+            n -= 1;
+            done += 1;
+            if (seen != null) {
+                long key = 0;
+                for (int i = 1; i <= last; i += 1) {
+                    key = key * size + result[i];
+                }
+                Long previous = seen.get(key);
+                if (previous != null) {
+                    n %= done - previous;
+                    seen = null;
+                } else if (seen.size() < MAX_STATES_TRACKED) {
+                    seen.put(key, done);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of keypresses from positions POSNS of my rotor
+     *  slots that move no rotor but the rightmost, or Integer.MAX_VALUE
+     *  if no keypress ever moves another rotor. */
+    int quietKeypresses(int[] posns) {
+        if (!onlyFastRotorMoves(posns)) {
+            return 0;
+        }
+        int distance = _fastNotchDistance[posns[_last]];
+        if (_last > 1 && _rotates[_last - 1] && distance >= 0) {
+            return distance;
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /** Returns true iff, with my rotor slots at positions POSNS, the next
+     *  keypress moves no rotor but the rightmost unless the rightmost is
+     *  at a notch. */
+    private boolean onlyFastRotorMoves(int[] posns) {
+        for (int i = 1; i < _last; i += 1) {
+            if ((_stepping[i][posns[i]] & 1) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Advance POSNS, the positions of my rotor slots, by one keypress:
+     *  the rightmost rotor always moves, and any other moving rotor moves
+     *  if the rotor to its right is at a notch, or if it is at a notch
+     *  itself and the rotor to its left moves too.  Both conditions are
+     *  carries recorded in _stepping, so a slot moves iff it or the slot
+     *  to its right carries.  Deciding and moving each rotor from left to
+     *  right is safe because the decision for a slot only looks at that
+     *  slot and the one to its right.  Returns true iff any rotor but the
+     *  rightmost moved. */
+    boolean step(int[] posns) {
+        int last = _last;
+        int[][] stepping = _stepping;
+        boolean moved = false;
+        int here = stepping[1][posns[1]];
+        for (int i = 1; i < last; i += 1) {
+            int right = stepping[i + 1][posns[i + 1]];
+            if (((here | right) & 1) != 0) {
+                posns[i] = here >>> 1;
+                moved = true;
+            }
+            here = right;
+        }
+        posns[last] = here >>> 1;
+        return moved;
+    }
+
+    /** Maximum number of rotor states remembered while looking for the
+     *  period of the rotors in positionsAfter. */
+    private static final int MAX_STATES_TRACKED = 1 << 20;
+
+    /** Number of table entries _innerCache may hold in all before it is
+     *  emptied. */
+    private static final int INNER_CACHE_ENTRIES = 1 << 20;
+
+    /** Number of plugboards whose tables _pluggedCache may hold. */
+    private static final int PLUGGED_CACHE_SIZE = 64;
+
+    /** Number of tables _innerCache may hold whatever the alphabet. */
+    private static final int MIN_INNER_CACHE_SIZE = 1024;
+
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+
+    /** Index of the rightmost rotor slot. */
+    private final int _last;
+
+    /** Positions of my rotor slots when I was made. */
+    private final int[] _initial;
+
+    /** Whether the rotor in each slot rotates. */
+    private final boolean[] _rotates;
+
+    /** Stepping table of the rotor in each slot, indexed by position.
+     *  Entry P is the slot's next position shifted left one bit, with
+     *  the low bit set iff the rotor carries at P: it is at a notch and
+     *  the rotor to its left rotates, so that both move on the next
+     *  keypress. */
+    private final int[][] _stepping;
+
+    /** Number of keypresses from each position of the rightmost rotor
+     *  to its next notch, or -1 if it has none. */
+    private final int[] _fastNotchDistance;
+
+    /** Permutation of the rotor in each slot at position 0. */
+    private final int[][] _slotForward;
+
+    /** Inverse permutation of the rotor in each slot at position 0. */
+    private final int[][] _slotBackward;
+
+    /** Conversions of the rightmost rotor, indexed by its position and
+     *  then by the contact entered. */
+    private final int[][] _fastForward;
+
+    /** Inverse conversions of the rightmost rotor, indexed by its
+     *  position and then by the contact entered. */
+    private final int[][] _fastBackward;
+
+    /** Inner tables computed so far, keyed by the packed positions of the
+     *  rotors left of the rightmost one, or null if those positions do
+     *  not fit in a long.  Emptied when it reaches _innerCacheSize. */
+    private final ConcurrentHashMap<Long, int[]> _innerCache;
+
+    /** Number of tables _innerCache may hold. */
+    private final int _innerCacheSize;
+
+    /** Rightmost rotor tables with no plugboard connections. */
+    private final Plugged _unplugged;
+
+    /** Rightmost rotor tables with plugboards folded in, keyed by the
+     *  plugboard's table as a string.  Emptied when it reaches
+     *  PLUGGED_CACHE_SIZE. */
+    private final ConcurrentHashMap<String, Plugged> _pluggedCache =
+        new ConcurrentHashMap<String, Plugged>();
+
+    /** The tables of a rightmost rotor with a plugboard folded in. */
+    static final class Plugged {
+
+        /** Tables FORWARD and BACKWARD, indexed by rotor position and then
+         *  by contact. */
+        private Plugged(int[][] forward, int[][] backward) {
+            _forward = forward;
+            _backward = backward;
+        }
+
+        /** Return the table applying the plugboard and then the rotor. */
+        int[][] forward() {
+            return _forward;
+        }
+
+        /** Return the table applying the rotor's inverse and then the
+         *  plugboard. */
+        int[][] backward() {
+            return _backward;
+        }
+
+        /** Plugboard, then rotor. */
+        private final int[][] _forward;
+
+        /** Inverse rotor, then plugboard. */
+        private final int[][] _backward;
+    }
+}
@@ -0,0 +1,371 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author David Oh
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private Alphabet alpha = new Alphabet();
+
+    /** Return a machine with the standard naval rotors, set to
+     *  "B BETA III IV I AXLE" with plugboard (HQ) (EX) (IP) (TR) (BY). */
+    private Machine navalMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new MovingRotor("I", new Permutation(
+                "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", alpha),
+                "Q"));
+        rotors.add(new MovingRotor("III", new Permutation(
+                "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)", alpha), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(
+                "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)", alpha), "J"));
+        rotors.add(new FixedRotor("Beta", new Permutation(
+                "(ALBEVFCYODJWUGNMQTZSKPR) (HIX)", alpha)));
+        rotors.add(new Reflector("B", new Permutation(
+                "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) "
+                + "(RX) (SZ) (TV)", alpha)));
+        Machine m = new Machine(alpha, 5, 3, rotors);
+        m.insertRotors(new String[] {"B", "Beta", "III", "IV", "I"});
+        m.setRotors("AXLE");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", alpha));
+        return m;
+    }
+
+    /** Return a machine with the Enigma I rotors and reflector, with
+     *  "UKWB I II III" inserted and no plugboard. */
+    private Machine armyMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new MovingRotor("I", new Permutation(
+                "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", alpha),
+                "Q"));
+        rotors.add(new MovingRotor("II", new Permutation(
+                "(FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)", alpha),
+                "E"));
+        rotors.add(new MovingRotor("III", new Permutation(
+                "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)", alpha), "V"));
+        rotors.add(new Reflector("UKWB", new Permutation(
+                "(AY) (BR) (CU) (DH) (EQ) (FS) (GL) (IP) (JX) (KN) (MO) "
+                + "(TZ) (VW)", alpha)));
+        Machine m = new Machine(alpha, 4, 3, rotors);
+        m.insertRotors(new String[] {"UKWB", "I", "II", "III"});
+        m.setPlugboard(new Permutation("", alpha));
+        return m;
+    }
+
+    /** Return a pseudo-random message of N upper-case letters. */
+    private String randomMessage(int n) {
+        java.util.Random random = new java.util.Random(61);
+        char[] msg = new char[n];
+        for (int i = 0; i < n; i += 1) {
+            msg[i] = alpha.toChar(random.nextInt(alpha.size()));
+        }
+        return new String(msg);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testConvertMessage() {
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                navalMachine().convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void testConvertArrays() {
+        char[] in = "xxFROMHISSHOULDERHIAWATHA".toCharArray();
+        char[] out = new char[24];
+        navalMachine().convert(in, 2, 23, out, 1);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", new String(out, 1, 23));
+    }
+
+    @Test
+    public void testConvertCharBuffers() {
+        Machine m = navalMachine();
+        java.nio.CharBuffer in =
+            java.nio.CharBuffer.wrap("FROMHISSHOULDERHIAWATHA");
+        java.nio.CharBuffer out = java.nio.CharBuffer.allocate(10);
+        StringBuilder result = new StringBuilder();
+        while (in.hasRemaining()) {
+            m.convert(in, out);
+            out.flip();
+            result.append(out);
+            out.clear();
+        }
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", result.toString());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testConvertRejectsForeignCharacter() {
+        navalMachine().convert("FROM HIS");
+    }
+
+    @Test
+    public void testSetRotorsRejectsBadSettings() {
+        Machine m = navalMachine();
+        int[][] settings = {
+            {0, 1, 2}, {0, 1, 2, 3, 4}, {0, 1, 26, 3}, {0, -1, 2, 3},
+        };
+        for (int[] setting : settings) {
+            try {
+                m.setRotors(setting);
+                fail("bad setting accepted");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     m.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        Machine m = navalMachine();
+        m.convert("FROMHIS");
+        Machine copy = m.copy();
+        assertEquals("OILPUBKJ", copy.convert("SHOULDER"));
+        assertEquals("OILPUBKJ", m.convert("SHOULDER"));
+        assertEquals("ZPISFXDW", copy.convert("HIAWATHA"));
+    }
+
+    @Test
+    public void testCursorsShareSpec() {
+        Machine m = navalMachine();
+        MachineCursor first = m.cursor();
+        MachineCursor second = m.cursor();
+        assertSame(m.spec(), first.spec());
+        assertSame(m.spec(), m.copy().spec());
+        char[] msg = "FROMHISSHOULDERHIAWATHA".toCharArray();
+        char[] other = "SHOULDERHIAWATHA".toCharArray();
+        first.convert(msg, 0, 7, msg, 0);
+        second.convert(other, 0, other.length, other, 0);
+        first.convert(msg, 7, 16, msg, 7);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", new String(msg));
+        assertEquals(navalMachine().convert("SHOULDERHIAWATHA"),
+                     new String(other));
+        assertEquals("AXLE", m.positionAt(0));
+    }
+
+    @Test
+    public void testCopiesShareCompiledSpecs() {
+        Machine m = navalMachine();
+        Machine first = m.copy();
+        Machine second = m.copy();
+        String[] order = {"B", "Beta", "I", "IV", "III"};
+        first.insertRotors(order);
+        second.insertRotors(order);
+        assertNotSame(m.spec(), first.spec());
+        assertSame(first.spec(), second.spec());
+        first.setRotors("AXLE");
+        second.setRotors("AXLE");
+        assertEquals(first.convert("FROMHISSHOULDER"),
+                     second.convert("FROMHISSHOULDER"));
+        second.setRing(new int[] {1, 2, 3, 4});
+        assertNotSame(first.spec(), second.spec());
+    }
+
+    @Test
+    public void testSpecIgnoresLaterRotorChanges() {
+        Machine m = navalMachine();
+        MachineSpec spec = m.spec();
+        MachineCursor cursor = m.cursor();
+        m.setRing(new int[] {1, 2, 3, 4});
+        assertNotSame(spec, m.spec());
+        char[] msg = "FROMHISSHOULDERHIAWATHA".toCharArray();
+        cursor.convert(msg, 0, msg.length, msg, 0);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", new String(msg));
+    }
+
+    @Test
+    public void testPlugboardTablesAreCached() {
+        MachineSpec spec = navalMachine().spec();
+        int[] plug = new int[alpha.size()];
+        for (int p = 0; p < plug.length; p += 1) {
+            plug[p] = p;
+        }
+        MachineSpec.Plugged unplugged = spec.plugged(plug.clone());
+        assertSame(unplugged, spec.plugged(plug.clone()));
+        plug[0] = 1;
+        plug[1] = 0;
+        MachineSpec.Plugged swapped = spec.plugged(plug.clone());
+        assertSame(swapped, spec.plugged(plug.clone()));
+        assertNotSame(unplugged, swapped);
+        for (int posn = 0; posn < alpha.size(); posn += 1) {
+            assertEquals(unplugged.forward()[posn][1],
+                         swapped.forward()[posn][0]);
+            assertEquals(unplugged.forward()[posn][2],
+                         swapped.forward()[posn][2]);
+        }
+    }
+
+    @Test
+    public void testConvertBatch() {
+        String[] settings = {"AXLE", "ZZZZ", "AAAA", "QEVJ"};
+        Permutation[] plugs = {
+            new Permutation("(HQ) (EX) (IP) (TR) (BY)", alpha),
+            new Permutation("", alpha),
+            new Permutation("(AZ)", alpha),
+            new Permutation("(QW) (ER)", alpha),
+        };
+        String[] msgs = {
+            "FROMHISSHOULDERHIAWATHA", randomMessage(700), "", "HIAWATHA"
+        };
+        Machine m = navalMachine();
+        String[] results = m.convertBatch(settings, plugs, msgs);
+        for (int k = 0; k < msgs.length; k += 1) {
+            Machine single = navalMachine();
+            single.setRotors(settings[k]);
+            single.setPlugboard(plugs[k]);
+            assertEquals(single.convert(msgs[k]), results[k]);
+        }
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     m.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void testConvertBatchVectorMatchesScalar() {
+        if (!Machine.VECTOR_LANES) {
+            return;
+        }
+        String[] settings = new String[37];
+        Permutation[] plugs = new Permutation[settings.length];
+        String[] msgs = new String[settings.length];
+        for (int k = 0; k < settings.length; k += 1) {
+            settings[k] = randomMessage(4);
+            plugs[k] = new Permutation(k % 3 == 0 ? "" : "(AZ) (QE)", alpha);
+            msgs[k] = randomMessage(k * 29);
+        }
+        Machine m = navalMachine();
+        assertArrayEquals(m.convertBatch(settings, plugs, msgs, false),
+                          m.convertBatch(settings, plugs, msgs, true));
+        settings = new String[300];
+        plugs = new Permutation[settings.length];
+        msgs = new String[settings.length];
+        for (int k = 0; k < settings.length; k += 1) {
+            settings[k] = alpha.toChar(k % 26) + "XL" + alpha.toChar(k / 26);
+            plugs[k] = new Permutation(
+                k % 2 == 0 ? "(AZ)" : "(" + alpha.toChar(k % 13)
+                + alpha.toChar(13 + k / 13 % 13) + ")", alpha);
+            msgs[k] = randomMessage(k % 40);
+        }
+        assertArrayEquals(m.convertBatch(settings, plugs, msgs, false),
+                          m.convertBatch(settings, plugs, msgs, true));
+    }
+
+    @Test
+    public void testSkipMatchesConversion() {
+        for (int n : new int[] {0, 1, 25, 26, 650, 17000, 100000}) {
+            Machine converted = navalMachine();
+            converted.convert(randomMessage(n));
+            Machine skipped = navalMachine();
+            assertEquals(converted.positionAt(0), skipped.positionAt(n));
+            skipped.skip(n);
+            assertEquals(converted.positionAt(0), skipped.positionAt(0));
+            assertEquals(converted.convert("HIAWATHA"),
+                         skipped.convert("HIAWATHA"));
+        }
+    }
+
+    @Test
+    public void testPositionAtKeepsState() {
+        Machine m = navalMachine();
+        assertEquals("AXLE", m.positionAt(0));
+        assertEquals("AXLF", m.positionAt(1));
+        m.positionAt(123456789L);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                m.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void testConvertParallelMatchesSerial() {
+        String msg = randomMessage(300000);
+        Machine serial = navalMachine();
+        Machine parallel = navalMachine();
+        assertEquals(serial.convert(msg), parallel.convertParallel(msg));
+        assertEquals(serial.positionAt(0), parallel.positionAt(0));
+        assertEquals(serial.convert("HIAWATHA"),
+                     parallel.convertParallel("HIAWATHA"));
+    }
+
+    @Test
+    public void testRingSetting() {
+        Machine m = armyMachine();
+        m.setRotors("AAA");
+        assertEquals("BDZGO", m.convert("AAAAA"));
+        m.setRotors("AAA");
+        m.setRing("BBB");
+        assertEquals("EWTYX", m.convert("AAAAA"));
+        m.setRotors("AAA");
+        m.setRing("AAA");
+        assertEquals("BDZGO", m.convert("AAAAA"));
+    }
+
+    @Test
+    public void testDoubleStepping() {
+        Machine m = armyMachine();
+        m.setRotors("ADU");
+        m.setRing("XYZ");
+        assertEquals("ADV", m.positionAt(1));
+        assertEquals("AEW", m.positionAt(2));
+        assertEquals("BFX", m.positionAt(3));
+        assertEquals("BFY", m.positionAt(4));
+        m.convert("AAA");
+        assertEquals("BFX", m.positionAt(0));
+    }
+
+    @Test
+    public void testConvertBytes() {
+        Alphabet bytes = Alphabet.bytes();
+        int[] forward = new int[bytes.size()];
+        int[] reflect = new int[bytes.size()];
+        for (int i = 0; i < forward.length; i += 1) {
+            forward[i] = (i * 7 + 3) % forward.length;
+            reflect[i] = i ^ 1;
+        }
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new Reflector("R", new Permutation(reflect, bytes)));
+        rotors.add(new MovingRotor("M", new Permutation(forward, bytes),
+                                   "\u0000\u0080"));
+        Machine chars = new Machine(bytes, 2, 1, rotors);
+        chars.insertRotors(new String[] {"R", "M"});
+        chars.setRotors("\u00fe");
+        chars.setPlugboard(new Permutation("(0a0b)", bytes));
+        byte[] msg = new byte[1000];
+        char[] text = new char[msg.length];
+        for (int i = 0; i < msg.length; i += 1) {
+            msg[i] = (byte) (i * 31);
+            text[i] = (char) (msg[i] & 0xff);
+        }
+        Machine copy = chars.copy();
+        copy.convert(msg, 0, msg.length, msg, 0);
+        chars.convert(text, 0, text.length, text, 0);
+        for (int i = 0; i < msg.length; i += 1) {
+            assertEquals(text[i], msg[i] & 0xff);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testConvertBytesNeedsByteAlphabet() {
+        byte[] msg = {1, 2};
+        navalMachine().convert(msg, 0, 2, msg, 0);
+    }
+
+    @Test
+    public void testLongMessageRoundTrip() {
+        String msg = randomMessage(50000);
+        String encoded = navalMachine().convert(msg);
+        assertEquals(msg, navalMachine().convert(encoded));
+    }
+
+}
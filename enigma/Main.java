@@ -1,12 +1,30 @@
 package enigma;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 
 import static enigma.EnigmaException.*;
 
@@ -16,14 +34,40 @@ import static enigma.EnigmaException.*;
 public final class Main {
 
     /** Process a sequence of encryptions and decryptions, as
-     *  specified by ARGS, where 1 <= ARGS.length <= 3.
+     *  specified by ARGS, where 1 <= ARGS.length <= 3, not counting
+     *  options.
      *  ARGS[0] is the name of a configuration file.
      *  ARGS[1] is optional; when present, it names an input file
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.
+     *  Options start with "--" and may appear anywhere in ARGS:
+     *    --mapped  Read the input file through memory-mapped buffers
+     *              instead of a Scanner.  Requires an input file.
+     *    --parallel  Like --mapped, but convert the messages following
+     *              different settings lines, and pieces of long message
+     *              lines, concurrently.
+     *    --config-cache=DIR  Keep compiled configurations in directory
+     *              DIR, and use the one compiled from ARGS[0]'s contents
+     *              instead of parsing ARGS[0] if it is there.
+     *    --stream  Read message lines in pieces of bounded size, so that
+     *              lines of any length are converted in bounded memory.
+     *    --checkpoint=FILE  Like --mapped, but every so often save in FILE
+     *              how far the run has got, so that it can be resumed.
+     *              Requires an output file.  FILE is deleted when the run
+     *              finishes.
+     *    --resume  With --checkpoint, continue from the checkpoint in FILE
+     *              if there is one, truncating the output file to where
+     *              it was saved, so that the output is as if the run had
+     *              never stopped.
+     *  If the configuration's alphabet is the byte alphabet, *BYTES, the
+     *  input is binary instead, and options that choose how to read text
+     *  do not apply (see processBinary).
+     *  Running with -Denigma.metrics=true reports the time spent in each
+     *  stage of the run (see Metrics), and -Denigma.checkpoint.interval=MS
+     *  sets the time between checkpoints in milliseconds. */
     public static void main(String... args) {
         try {
             new Main(args).process();
@@ -34,27 +78,156 @@ public final class Main {
         System.exit(1);
     }
 
-    /** Check ARGS and open the necessary files (see comment on main). */
+    /** Check ARGS and open the configuration file (see comment on main).
+     *  The input and output files are opened by process. */
     Main(String[] args) {
-        if (args.length < 1 || args.length > 3) {
+        ArrayList<String> files = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                setOption(arg);
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.size() < 1 || files.size() > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        _configName = files.get(0);
+        if (files.size() > 1) {
+            _inputName = files.get(1);
+        }
+        if (_configCache == null) {
+            _config = getInput(_configName);
+        }
+
+        if (files.size() > 2) {
+            _outputName = files.get(2);
+        }
 
-        if (args.length > 1) {
-            _input = getInput(args[1]);
+        if (_stream && _mapped) {
+            throw error("--stream cannot be used with --mapped "
+                        + "or --parallel");
+        }
+        if (_mapped && _inputName == null) {
+            throw error("--mapped requires an input file");
+        }
+        if (_checkpointName != null) {
+            if (_parallel || _stream) {
+                throw error("--checkpoint cannot be used with --parallel "
+                            + "or --stream");
+            }
+            if (_outputName == null) {
+                throw error("--checkpoint requires an output file");
+            }
+        } else if (_resume) {
+            throw error("--resume requires --checkpoint");
+        }
+    }
+
+    /** Open _input and _output as the command-line arguments ask, once
+     *  the configuration has given _alphabet.  Binary input is opened by
+     *  processBinary itself, and a run that cannot apply to it is
+     *  rejected before the output file is touched. */
+    private void openFiles() {
+        if (_alphabet.isBytes()) {
+            if (_checkpointName != null) {
+                throw error("--checkpoint does not apply to binary "
+                            + "input");
+            }
+        } else if (_stream) {
+            InputStream in = System.in;
+            if (_inputName != null) {
+                in = getInputStream(_inputName);
+            }
+            _input = new StreamSource(new InputStreamReader(in));
+        } else if (_mapped) {
+            _input = new MappedSource(_inputName);
+        } else if (_inputName != null) {
+            _input = new ScannerSource(getInput(_inputName));
         } else {
-            _input = new Scanner(System.in);
+            _input = new ScannerSource(new Scanner(System.in));
         }
 
-        if (args.length > 2) {
-            _output = getOutput(args[2]);
+        if (_checkpointName != null) {
+            openCheckpointed(_outputName);
+        } else if (_outputName != null) {
+            _output = new ChunkedOutput(getOutput(_outputName));
         } else {
-            _output = System.out;
+            _output = new ChunkedOutput(System.out);
+        }
+    }
+
+    /** Record the command-line option OPTION. */
+    private void setOption(String option) {
+        if (option.startsWith("--config-cache=")) {
+            _configCache = option.substring("--config-cache=".length());
+            return;
+        }
+        if (option.startsWith("--checkpoint=")) {
+            _checkpointName = option.substring("--checkpoint=".length());
+            _mapped = true;
+            return;
+        }
+        switch (option) {
+        case "--mapped":
+            _mapped = true;
+            break;
+        case "--parallel":
+            _mapped = _parallel = true;
+            break;
+        case "--stream":
+            _stream = true;
+            break;
+        case "--resume":
+            _resume = true;
+            break;
+        default:
+            throw error("unknown option %s", option);
         }
     }
 
+    /** A Main that converts settings blocks read from INPUT with
+     *  machines whose alphabet is ALPHABET, writing the results to
+     *  OUTPUT. */
+    private Main(Alphabet alphabet, MessageSource input,
+                 ChunkedOutput output) {
+        _alphabet = alphabet;
+        _input = input;
+        _output = output;
+    }
+
+    /** Convert all the settings blocks read from INPUT with M, writing
+     *  the results to OUTPUT, exactly as Main does for an input file. */
+    static void convertBlocks(Machine m, MessageSource input,
+                              ChunkedOutput output) {
+        Main worker = new Main(m.alphabet(), input, output);
+        try {
+            while (input.hasNext()) {
+                worker.processSettingBlock(m);
+            }
+        } finally {
+            output.flush();
+        }
+    }
+
+    /** A Main that reads its configuration from CONFIG. */
+    private Main(Scanner config) {
+        _config = config;
+    }
+
+    /** Return an Enigma machine configured from the contents of the
+     *  configuration file named NAME. */
+    static Machine configure(String name) {
+        Scanner config;
+        try {
+            config = new Scanner(new File(name));
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        return new Main(config).readConfig();
+    }
+
     /** Return a Scanner reading from the file named NAME. */
     private Scanner getInput(String name) {
         try {
@@ -64,10 +237,49 @@ public final class Main {
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return an InputStream reading from the file named NAME. */
+    private InputStream getInputStream(String name) {
+        try {
+            return new FileInputStream(name);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Open the output file named NAME for a run that saves checkpoints,
+     *  and, if resuming from a checkpoint, truncate it to the checkpoint's
+     *  output offset and move _input to its input offset. */
+    private void openCheckpointed(String name) {
+        MappedSource input = (MappedSource) _input;
+        if (_resume) {
+            _resumeFrom = Checkpoint.read(Paths.get(_checkpointName));
+        }
+        if (_resumeFrom != null
+            && _resumeFrom.inputSize() != input.size()) {
+            throw error("checkpoint %s is for a different input",
+                        _checkpointName);
+        }
+        try {
+            _outputFile = new FileOutputStream(name, _resumeFrom != null);
+            if (_resumeFrom != null) {
+                FileChannel channel = _outputFile.getChannel();
+                if (channel.size() < _resumeFrom.outputOffset()) {
+                    throw error("%s is shorter than its checkpoint", name);
+                }
+                channel.truncate(_resumeFrom.outputOffset());
+                input.seek(_resumeFrom.inputOffset());
+            }
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        _output = new ChunkedOutput(_outputFile);
+        _nextCheckpoint = System.nanoTime() + CHECKPOINT_INTERVAL;
+    }
+
+    /** Return an OutputStream writing to the file named NAME. */
+    private OutputStream getOutput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new FileOutputStream(name);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -76,126 +288,474 @@ public final class Main {
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
-    private void process() {
-        Machine m = readConfig();
-        while (_input.hasNext()) {
-            String settingLine = _input.nextLine();
-            while (settingLine.equals("")) {
-                _output.println();
-                settingLine = _input.nextLine();
+    void process() {
+        Machine m;
+        long start = Metrics.start();
+        if (_configCache != null) {
+            m = CompiledConfig.load(_configName, _configCache);
+            _alphabet = m.alphabet();
+        } else {
+            m = readConfig();
+        }
+        Metrics.stop(Metrics.CONFIG, start);
+        openFiles();
+        try {
+            if (_alphabet.isBytes()) {
+                processBinary(m);
+            } else if (_parallel) {
+                processInParallel(m);
+            } else {
+                if (_resumeFrom != null) {
+                    resume(m);
+                }
+                while (_input.hasNext()) {
+                    processSettingBlock(m);
+                }
             }
-            if (settingLine.charAt(0) != '*') {
-                throw new EnigmaException("Incorrect settings line.");
+        } finally {
+            _output.flush();
+        }
+        if (_checkpointName != null) {
+            try {
+                Files.deleteIfExists(Paths.get(_checkpointName));
+            } catch (IOException excp) {
+                throw error("could not delete checkpoint %s",
+                            _checkpointName);
             }
-            settingLine = settingLine.substring(2);
-            String[] settings = settingLine.split("\\s");
-            int count = 0;
-            for (int i = 0; i < settings.length; i += 1) {
-                if (!(settings[i].contains("(") || settings[i].contains(")"))) {
-                    count += 1;
+        }
+    }
+
+    /** Set M up as it was when _resumeFrom was saved, and convert the
+     *  rest of the settings block it was saved in. */
+    private void resume(Machine m) {
+        _settingLine = _resumeFrom.settings();
+        setUp(m, _settingLine);
+        m.setRotors(_resumeFrom.rotors());
+        processMessages(m);
+    }
+
+    /** Save a checkpoint of M and _input in _checkpointName if one is
+     *  due, after making sure the output so far is on the disk. */
+    private void checkpoint(Machine m) {
+        long now = System.nanoTime();
+        if (now - _nextCheckpoint < 0) {
+            return;
+        }
+        _output.flush();
+        try {
+            FileChannel channel = _outputFile.getChannel();
+            channel.force(false);
+            new Checkpoint(((MappedSource) _input).size(),
+                           ((MappedSource) _input).position(),
+                           channel.position(), _settingLine,
+                           m.positionAt(0))
+                .write(Paths.get(_checkpointName));
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+        _nextCheckpoint = now + CHECKPOINT_INTERVAL;
+    }
+
+    /** Apply M, whose alphabet is the byte alphabet, to the binary input
+     *  file (or the standard input), writing only the converted bytes to
+     *  _output.  The input is a sequence of blocks, each of which is a
+     *  settings line ended by a newline, any blank lines before it being
+     *  ignored, followed by an 8-byte big-endian count N and then the N
+     *  bytes of the message.  Messages are converted a buffer at a time,
+     *  so they may be of any length. */
+    private void processBinary(Machine m) {
+        InputStream in = System.in;
+        if (_inputName != null) {
+            in = getInputStream(_inputName);
+        }
+        DataInputStream data = new DataInputStream(
+            new BufferedInputStream(in, BINARY_BUFFER_SIZE));
+        byte[] buf = new byte[BINARY_BUFFER_SIZE];
+        try {
+            for (String line = readLine(data); line != null;
+                 line = readLine(data)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.charAt(0) != '*') {
+                    throw new EnigmaException("Incorrect settings line.");
+                }
+                long start = Metrics.start();
+                setUp(m, line);
+                Metrics.stop(Metrics.SETTINGS, start);
+                long remaining = data.readLong();
+                if (remaining < 0) {
+                    throw error("negative message length");
+                }
+                while (remaining > 0) {
+                    start = Metrics.start();
+                    int n = data.read(buf, 0,
+                                      (int) Math.min(remaining, buf.length));
+                    if (n < 0) {
+                        throw error("binary message truncated");
+                    }
+                    Metrics.stop(Metrics.INPUT, start);
+                    start = Metrics.start();
+                    m.convert(buf, 0, n, buf, 0);
+                    Metrics.stop(Metrics.CONVERT, start);
+                    Metrics.characters(n);
+                    start = Metrics.start();
+                    _output.write(buf, 0, n);
+                    Metrics.stop(Metrics.OUTPUT, start);
+                    remaining -= n;
                 }
             }
-            int numberOfInputRotors = count - 1;
-            settingPresent(m.numRotors(), settingLine);
-            numberOfRotorsTest(numberOfInputRotors, m);
-            String [] rotorNames = rotorNames(numberOfInputRotors, m, settings);
-            m.insertRotors(rotorNames);
-            _setting = settings[numberOfInputRotors];
-            checkSettingLength(_setting, m);
-            for (int i = 0; i < _setting.length(); i += 1) {
-                if (!_alphabet.contains(_setting.charAt(i))) {
-                    throw new EnigmaException("Setting characters "
-                            + "not found in alphabet.");
+        } catch (EOFException excp) {
+            throw error("binary message truncated");
+        } catch (IOException excp) {
+            throw error("could not read input");
+        }
+    }
+
+    /** Return the next line of IN, taking each byte as a character and
+     *  leaving out the terminating newline and any carriage return before
+     *  it, or null if IN is at its end. */
+    private static String readLine(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            return null;
+        }
+        StringBuilder line = new StringBuilder();
+        while (b >= 0 && b != '\n') {
+            line.append((char) b);
+            b = in.read();
+        }
+        int last = line.length() - 1;
+        if (last >= 0 && line.charAt(last) == '\r') {
+            line.setLength(last);
+        }
+        return line.toString();
+    }
+
+    /** Apply copies of M to the settings blocks of _input concurrently,
+     *  sending the results to _output in input order.  Only a bounded
+     *  number of blocks are in flight at once.  The copies share the
+     *  specs they compile, so blocks whose settings name the same rotors
+     *  with the same rings convert with one spec, each with its own
+     *  cursor. */
+    private void processInParallel(Machine m) {
+        MappedSource blocks = (MappedSource) _input;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int window = BLOCKS_PER_WORKER * pool.getParallelism();
+        ArrayDeque<ForkJoinTask<BlockResult>> pending =
+            new ArrayDeque<ForkJoinTask<BlockResult>>();
+        while (!pending.isEmpty() || blocks.hasNext()) {
+            if (pending.size() < window && blocks.hasNext()) {
+                MappedSource block =
+                    new MappedSource(blocks, blocks.position());
+                blocks.skipBlock();
+                Machine copy = m.copy();
+                pending.add(pool.submit(() -> convertBlock(copy, block)));
+            } else {
+                BlockResult result = pending.remove().join();
+                _output.write(result.output, 0, result.output.length);
+                if (result.error != null) {
+                    for (ForkJoinTask<BlockResult> task : pending) {
+                        task.cancel(false);
+                    }
+                    throw result.error;
                 }
             }
-            m.setRotors(_setting);
-            String plug = "";
-            for (int k = numberOfInputRotors + 1; k < settings.length; k += 1) {
-                plug += settings[k];
+        }
+    }
+
+    /** Convert the settings block at the start of BLOCK with M, returning
+     *  the output and any error that stopped the conversion. */
+    private BlockResult convertBlock(Machine m, MappedSource block) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Main worker = new Main(_alphabet, block,
+                               new ChunkedOutput(bytes, BLOCK_BUFFER_SIZE));
+        worker._parallel = _parallel;
+        RuntimeException error = null;
+        try {
+            worker.processSettingBlock(m);
+        } catch (RuntimeException excp) {
+            error = excp;
+        }
+        worker._output.flush();
+        return new BlockResult(bytes.toByteArray(), error);
+    }
+
+    /** Read a settings line (after any blank lines) from _input, set up
+     *  M accordingly, and convert the message lines that follow it, up
+     *  to the next settings line. */
+    private void processSettingBlock(Machine m) {
+        String settingLine = _input.nextLine().toString();
+        while (settingLine.equals("")) {
+            _output.println();
+            settingLine = _input.nextLine().toString();
+        }
+        if (settingLine.charAt(0) != '*') {
+            throw new EnigmaException("Incorrect settings line.");
+        }
+        long start = Metrics.start();
+        setUp(m, settingLine);
+        Metrics.stop(Metrics.SETTINGS, start);
+        _settingLine = settingLine;
+        processMessages(m);
+    }
+
+    /** Convert the message lines that follow in _input with M, up to the
+     *  next settings line. */
+    private void processMessages(Machine m) {
+        while (_input.hasNext() && !_input.hasNextSetting()) {
+            if (_stream) {
+                streamMessageLine(m);
+                continue;
             }
-            m.setPlugboard(new Permutation(plug, _alphabet));
-            while (_input.hasNext() && !_input.hasNext("\\*")) {
-                String eachLine = _input.nextLine();
-                if (eachLine.equals("")) {
-                    _output.println();
+            long start = Metrics.start();
+            CharSequence eachLine = _input.nextLine();
+            if (eachLine.length() == 0) {
+                _output.println();
+            } else {
+                int length = removeSpaces(eachLine);
+                Metrics.stop(Metrics.INPUT, start);
+                start = Metrics.start();
+                if (_parallel) {
+                    m.convertParallel(_message, 0, length, _message, 0);
                 } else {
-                    String removedSpaces = eachLine.replaceAll("\\s", "");
-                    for (int i = 0; i < removedSpaces.length(); i += 1) {
-                        if (!_alphabet.contains(removedSpaces.charAt(i))) {
-                            throw new EnigmaException("Message contains "
-                                    + "characters not found in alphabet.");
-                        }
-                    }
-                    String out = m.convert(removedSpaces);
-                    printMessageLine(out);
+                    m.convert(_message, 0, length, _message, 0);
                 }
+                Metrics.stop(Metrics.CONVERT, start);
+                Metrics.characters(length);
+                start = Metrics.start();
+                printMessageLine(_message, length);
+                Metrics.stop(Metrics.OUTPUT, start);
             }
-            if (!_input.hasNext() && _input.hasNextLine()) {
-                _output.println();
+            if (_checkpointName != null) {
+                checkpoint(m);
             }
         }
+        if (!_input.hasNext() && _input.hasNextLine()) {
+            _output.println();
+        }
     }
 
-    /** Check to see if initial setting token is present.
-     * @param numRotors : Number of rotors read from input.
-     * @param s : setting line. */
-    void settingPresent(int numRotors, String s) {
-        String[] arr = s.split("\\s");
-        String settingLine = "";
-        for (int i = 0; i < arr.length; i += 1) {
-            if (!arr[i].contains("(")) {
-                settingLine += arr[i];
-                settingLine += " ";
+    /** Convert the next message line of _input, which must be a
+     *  StreamSource, with M, a piece at a time, and print the result in
+     *  groups of five as printMessageLine would. */
+    private void streamMessageLine(Machine m) {
+        StreamSource input = (StreamSource) _input;
+        long start = Metrics.start();
+        CharSequence piece = input.nextLinePiece();
+        if (piece == null) {
+            _output.println();
+            return;
+        }
+        int group = 0;
+        while (piece != null) {
+            int length = removeSpaces(piece);
+            Metrics.stop(Metrics.INPUT, start);
+            start = Metrics.start();
+            m.convert(_message, 0, length, _message, 0);
+            Metrics.stop(Metrics.CONVERT, start);
+            Metrics.characters(length);
+            start = Metrics.start();
+            group = printGroups(_message, length, group);
+            Metrics.stop(Metrics.OUTPUT, start);
+            start = Metrics.start();
+            piece = input.nextLinePiece();
+        }
+        Metrics.stop(Metrics.INPUT, start);
+        if (_input.hasNextLine()) {
+            _output.print('\n');
+        }
+    }
+
+    /** Set M according to the settings line LINE: the "*" and the
+     *  character after it, then whitespace-separated rotor names, a
+     *  setting, an optional ring setting (all rings are at the first
+     *  letter of the alphabet if it is missing), and plugboard cycles.
+     *  A line with doubled whitespace never has a ring setting, so the
+     *  empty tokens it splits into are counted as arguments as before.
+     *  The line is split into tokens in one pass, rotors are only
+     *  reinserted if their names differ from the last settings line's,
+     *  and the plugboard is only parsed again if its text differs. */
+    private void setUp(Machine m, String line) {
+        int from = Math.min(2, line.length());
+        int numTokens = tokenize(line, from);
+        int count = 0;
+        int empty = 0;
+        int withoutOpen = 0;
+        int lastWithoutOpen = -1;
+        for (int i = 0; i < numTokens; i += 1) {
+            boolean open = hasChar(line, i, '(');
+            if (!open && !hasChar(line, i, ')')) {
+                count += 1;
+            }
+            if (_tokenEnd[i] == _tokenStart[i]) {
+                empty += 1;
+            }
+            if (!open) {
+                withoutOpen += 1;
+                if (_tokenEnd[i] > _tokenStart[i]) {
+                    lastWithoutOpen = withoutOpen;
+                }
             }
         }
-        String[] withoutPerms = settingLine.split("\\s");
-        if (numRotors != withoutPerms.length - 1) {
+        int present = withoutOpen == 0 ? 1 : Math.max(lastWithoutOpen, 0);
+        int setting = m.numRotors();
+        boolean hasRing = empty == 0 && count - 2 == m.numRotors()
+            && present - 2 == m.numRotors()
+            && !hasChar(line, setting + 1, '(')
+            && !hasChar(line, setting + 1, ')');
+        if (!hasRing && (present - 1 != m.numRotors()
+                         || count - 1 != m.numRotors())) {
             throw new EnigmaException("Settings line has wrong number of "
                     + "arguments.");
         }
+        insertRotors(m, line, setting);
+        _setting = letters(line, setting, _setting, m.numRotors() - 1,
+                           "Setting");
+        m.setRotors(_setting);
+        if (hasRing) {
+            _ring = letters(line, setting + 1, _ring, m.numRotors() - 1,
+                            "Ring setting");
+        } else if (_ring.length != m.numRotors() - 1) {
+            _ring = new int[m.numRotors() - 1];
+        } else {
+            Arrays.fill(_ring, 0);
+        }
+        m.setRing(_ring);
+        int cycles = hasRing ? setting + 2 : setting + 1;
+        String plug = "";
+        if (cycles < numTokens) {
+            plug = line.substring(_tokenStart[cycles],
+                                  _tokenEnd[numTokens - 1]);
+        }
+        Permutation plugboard = _plugboards.get(plug);
+        if (plugboard == null) {
+            plugboard = new Permutation(plug, _alphabet);
+            if (_plugboards.size() >= MAX_PLUGBOARDS) {
+                _plugboards.clear();
+            }
+            _plugboards.put(plug, plugboard);
+        }
+        m.setPlugboard(plugboard);
     }
 
-    /** Check to see that length of SETTING matches the number of rotors
-     *  not including the reflector.
-     *  @param setting : Setting token.
-     *  @param m : Machine used for translation. */
-    void checkSettingLength(String setting, Machine m) {
-        if (setting.length() != m.numRotors() - 1) {
-            throw new EnigmaException("Incorrect number of letters "
-                    + "in setting.");
+    /** Return the indices in my alphabet of the letters of token K of
+     *  LINE, which must have N letters, reusing RESULT if it is the right
+     *  size.  WHAT names the token, capitalized, in error messages. */
+    private int[] letters(String line, int k, int[] result, int n,
+                          String what) {
+        CharSequence token = line;
+        int start = _tokenStart[k];
+        int length = _tokenEnd[k] - start;
+        if (_alphabet.isBytes()) {
+            token = _alphabet.decode(line.substring(start, _tokenEnd[k]));
+            start = 0;
+            length = token.length();
+        }
+        if (length != n) {
+            throw error("Incorrect number of letters in %s.",
+                        what.toLowerCase());
+        }
+        if (result.length != n) {
+            result = new int[n];
         }
+        for (int i = 0; i < n; i += 1) {
+            result[i] = _alphabet.toInt(token.charAt(start + i));
+            if (result[i] < 0) {
+                throw error("%s characters not found in alphabet.", what);
+            }
+        }
+        return result;
     }
 
-    /** Method creates array of rotor names and checks if there are
-     * any duplicates.
-     * @param numRotors : Number of Rotors from input file.
-     * @param m : Machine used for translation.
-     * @param settings : String of the settings line.
-     * @return : String array of rotor names. */
-    String[] rotorNames(int numRotors, Machine m, String[] settings) {
-        String[] rotorNames = new String[m.numRotors()];
-        for (int i = 0; i < numRotors; i += 1) {
-            rotorNames[i] = settings[i];
+    /** Insert into M the rotors named by the first N tokens of LINE,
+     *  unless they are the rotors inserted by the previous settings line.
+     *  Rejects duplicate names. */
+    private void insertRotors(Machine m, String line, int n) {
+        boolean same = _rotorNames != null && _rotorNames.length == n;
+        for (int i = 0; same && i < n; i += 1) {
+            int length = _tokenEnd[i] - _tokenStart[i];
+            same = _rotorNames[i].length() == length
+                && line.regionMatches(_tokenStart[i], _rotorNames[i], 0,
+                                      length);
         }
-        for (int i = 0; i < rotorNames.length; i += 1) {
-            for (int j = i + 1; j < rotorNames.length; j += 1) {
-                if (rotorNames[i].equals(rotorNames[j])) {
-                    throw new EnigmaException("Can't have duplicate "
-                            + "rotors in slots.");
-                }
+        if (same) {
+            return;
+        }
+        String[] names = new String[n];
+        _namesSeen.clear();
+        for (int i = 0; i < n; i += 1) {
+            names[i] = line.substring(_tokenStart[i], _tokenEnd[i]);
+            if (!_namesSeen.add(names[i])) {
+                throw new EnigmaException("Can't have duplicate "
+                        + "rotors in slots.");
             }
         }
-        return rotorNames;
+        _rotorNames = null;
+        m.insertRotors(names);
+        _rotorNames = names;
     }
 
-    /** Check to see if number of Rotors match.
-     * @param numRotorInput : number of rotors to be used read from input file.
-     * @param m : machine used for translation. */
-    void numberOfRotorsTest(int numRotorInput, Machine m) {
-        if (numRotorInput != m.numRotors()) {
-            throw new EnigmaException("Settings line has wrong number of "
-                    + "arguments.");
+    /** Split LINE from index FROM on into tokens separated by single
+     *  whitespace characters, as String.split("\\s") would, recording
+     *  their bounds in _tokenStart and _tokenEnd.  Returns the number of
+     *  tokens. */
+    private int tokenize(String line, int from) {
+        int n = 0;
+        int start = from;
+        boolean split = false;
+        for (int i = from; i <= line.length(); i += 1) {
+            if (i < line.length() && !isSeparator(line.charAt(i))) {
+                continue;
+            }
+            split |= i < line.length();
+            if (n == _tokenStart.length) {
+                _tokenStart = Arrays.copyOf(_tokenStart, 2 * n);
+                _tokenEnd = Arrays.copyOf(_tokenEnd, 2 * n);
+            }
+            _tokenStart[n] = start;
+            _tokenEnd[n] = i;
+            n += 1;
+            start = i + 1;
+        }
+        if (split) {
+            while (n > 0 && _tokenEnd[n - 1] == _tokenStart[n - 1]) {
+                n -= 1;
+            }
+        }
+        return n;
+    }
+
+    /** Returns true iff C matches the regular expression "\\s". */
+    private static boolean isSeparator(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /** Returns true iff token number K of LINE contains C. */
+    private boolean hasChar(String line, int k, char c) {
+        for (int i = _tokenStart[k]; i < _tokenEnd[k]; i += 1) {
+            if (line.charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Copy LINE into _message, leaving out whitespace, and return the
+     *  number of characters copied. */
+    private int removeSpaces(CharSequence line) {
+        if (_message.length < line.length()) {
+            _message = new char[Math.max(line.length(), 2 * _message.length)];
         }
+        int length = 0;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (c != ' ' && (c < '\t' || c > '\r')) {
+                _message[length] = c;
+                length += 1;
+            }
+        }
+        return length;
     }
 
     /** Return an Enigma machine configured from the contents of configuration
@@ -205,7 +765,11 @@ public final class Main {
             _allRotors = new ArrayList<Rotor>();
             if (_config.hasNext()) {
                 String alpha = _config.next();
-                _alphabet = new Alphabet(alpha);
+                if (alpha.equals(Alphabet.BYTES_NAME)) {
+                    _alphabet = Alphabet.bytes();
+                } else {
+                    _alphabet = new Alphabet(alpha);
+                }
             }
             if (_config.hasNextInt()) {
                 try {
@@ -240,7 +804,8 @@ public final class Main {
             }
             Permutation newPerm = new Permutation(permutationCycles, _alphabet);
             if (typeAndNotches.charAt(0) == 'M') {
-                String notches = typeAndNotches.substring(1);
+                String notches =
+                    _alphabet.decode(typeAndNotches.substring(1));
                 _newRotor = new MovingRotor(name, newPerm, notches);
             } else if (typeAndNotches.charAt(0) == 'N') {
                 _newRotor = new FixedRotor(name, newPerm);
@@ -253,39 +818,132 @@ public final class Main {
         }
     }
 
-    /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
-        M.setRotors(settings);
-    }
-
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        String outputMessage = msg;
-        _output.print(outputMessage.charAt(0));
-        for (int i = 1; i < outputMessage.length(); i += 1) {
-            if (i % 5 == 0) {
-                _output.print(" ");
+    /** Print the first LENGTH characters of MSG in groups of five
+     *  (except that the last group may have fewer letters). */
+    private void printMessageLine(char[] msg, int length) {
+        for (int i = 0; i < length; i += 5) {
+            if (i > 0) {
+                _output.print(' ');
             }
-            _output.print(outputMessage.charAt(i));
+            _output.print(msg, i, Math.min(5, length - i));
         }
         if (_input.hasNextLine()) {
-            _output.print("\n");
+            _output.print('\n');
         }
     }
 
+    /** Print the first LENGTH characters of MSG in groups of five,
+     *  continuing a line on which a group of GROUP characters has been
+     *  printed (GROUP is 0 if nothing has).  Returns the number of
+     *  characters in the last group printed. */
+    private int printGroups(char[] msg, int length, int group) {
+        int i = 0;
+        while (i < length) {
+            if (group == 5) {
+                _output.print(' ');
+                group = 0;
+            }
+            int n = Math.min(5 - group, length - i);
+            _output.print(msg, i, n);
+            group += n;
+            i += n;
+        }
+        return group;
+    }
+
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private MessageSource _input;
 
     /** Source of machine configuration. */
     private Scanner _config;
 
+    /** Name of the input file, or null if input comes from the standard
+     *  input. */
+    private String _inputName;
+
+    /** Name of the output file, or null if output goes to the standard
+     *  output. */
+    private String _outputName;
+
+    /** Name of the configuration file. */
+    private String _configName;
+
+    /** Directory of compiled configurations, or null if they are not
+     *  used. */
+    private String _configCache;
+
     /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    private ChunkedOutput _output;
+
+    /** True iff the input file is to be read through memory mapping. */
+    private boolean _mapped;
+
+    /** True iff settings blocks are to be converted concurrently. */
+    private boolean _parallel;
+
+    /** True iff message lines are to be read and converted in pieces. */
+    private boolean _stream;
+
+    /** Name of the checkpoint file, or null if checkpoints are not
+     *  saved. */
+    private String _checkpointName;
+
+    /** True iff a run is to resume from its checkpoint. */
+    private boolean _resume;
+
+    /** Checkpoint this run resumes from, or null. */
+    private Checkpoint _resumeFrom;
+
+    /** Output file of a run that saves checkpoints. */
+    private FileOutputStream _outputFile;
+
+    /** Value of System.nanoTime() at or after which the next checkpoint
+     *  is due. */
+    private long _nextCheckpoint;
+
+    /** Settings line of the settings block being converted. */
+    private String _settingLine;
+
+    /** Time between checkpoints, in nanoseconds. */
+    private static final long CHECKPOINT_INTERVAL =
+        TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("enigma.checkpoint.interval", 30000));
+
+    /** Number of settings blocks that may be in flight per worker
+     *  thread in parallel mode. */
+    private static final int BLOCKS_PER_WORKER = 4;
+
+    /** Size of the buffers through which binary input is converted. */
+    private static final int BINARY_BUFFER_SIZE = 1 << 16;
+
+    /** Number of plugboards kept in _plugboards. */
+    private static final int MAX_PLUGBOARDS = 64;
+
+    /** Size of the output buffer for each block in parallel mode. */
+    private static final int BLOCK_BUFFER_SIZE = 1 << 13;
+
+    /** The output of converting one settings block in parallel mode. */
+    private static class BlockResult {
+
+        /** A result with encoded OUTPUT, stopped early by ERROR if it is
+         *  not null. */
+        BlockResult(byte[] output, RuntimeException error) {
+            this.output = output;
+            this.error = error;
+        }
+
+        /** Encoded output of the block. */
+        private final byte[] output;
+
+        /** Error that stopped conversion of the block, or null. */
+        private final RuntimeException error;
+    }
+
+    /** Message line being converted, with whitespace removed. */
+    private char[] _message = new char[1 << 13];
 
     /** A new rotor that will be returned by the readRotor method. */
     private Rotor _newRotor;
@@ -299,9 +957,27 @@ public final class Main {
     /** Number of pawls from config file. */
     private int _numPawls;
 
-    /** String of letters indicating initial setting of rotors. */
-    private String _setting;
+    /** Initial setting of the rotors, as alphabet indices. */
+    private int[] _setting = new int[0];
+
+    /** Ring settings of the rotors, as alphabet indices. */
+    private int[] _ring = new int[0];
+
+    /** Plugboards given by recent settings lines, by the text of their
+     *  cycles.  Emptied when it reaches MAX_PLUGBOARDS. */
+    private final HashMap<String, Permutation> _plugboards =
+        new HashMap<String, Permutation>();
+
+    /** Names of the rotors inserted by the last settings line, or null
+     *  if none were. */
+    private String[] _rotorNames;
+
+    /** Rotor names seen while checking for duplicates. */
+    private final HashSet<String> _namesSeen = new HashSet<String>();
+
+    /** Start of each token of the settings line being parsed. */
+    private int[] _tokenStart = new int[16];
 
-    /** String of plugboards from input file. */
-    private String _plugboard = "";
+    /** End of each token of the settings line being parsed. */
+    private int[] _tokenEnd = new int[16];
 }
@@ -0,0 +1,175 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+
+/** The suite of all JUnit tests for the Main class.
+ *  @author David Oh
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration with the naval rotors and reflector B. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + "5 3\n"
+        + "I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + "III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + "IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + "Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + "B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "     (RX) (SZ) (TV)\n";
+
+    /** Return the output of Main run with OPTIONS on the configuration
+     *  CONFIG and the input INPUT. */
+    private String run(String input, String... options) throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path config = dir.resolve("config.conf");
+        Path in = dir.resolve("input.in");
+        Path out = dir.resolve("output.out");
+        Files.write(config, CONFIG.getBytes(StandardCharsets.UTF_8));
+        Files.write(in, input.getBytes(StandardCharsets.UTF_8));
+        ArrayList<String> args = new ArrayList<String>(Arrays.asList(options));
+        args.add(config.toString());
+        args.add(in.toString());
+        args.add(out.toString());
+        try {
+            new Main(args.toArray(new String[0])).process();
+            return new String(Files.readAllBytes(out), StandardCharsets.UTF_8);
+        } finally {
+            Files.deleteIfExists(config);
+            Files.deleteIfExists(in);
+            Files.deleteIfExists(out);
+            Files.delete(dir);
+        }
+    }
+
+    /** Return the message of the error Main reports for the input
+     *  INPUT, or null if there is none. */
+    private String error(String input) throws IOException {
+        try {
+            run(input);
+            return null;
+        } catch (EnigmaException excp) {
+            return excp.getMessage();
+        }
+    }
+
+    /** Return the output of Main.convertBlocks converting INPUT with M. */
+    private String convertBlocks(Machine m, String input) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Main.convertBlocks(m, new ScannerSource(new Scanner(input)),
+                           new ChunkedOutput(bytes));
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /** Return a pseudo-random message of N upper-case letters. */
+    private String randomMessage(int n) {
+        Random random = new Random(61);
+        char[] msg = new char[n];
+        for (int i = 0; i < n; i += 1) {
+            msg[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(msg);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testParallelMatchesSerialOnLongLines() throws IOException {
+        String input = "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+            + randomMessage(1 << 18) + "\nFROMHISSHOULDERHIAWATHA\n";
+        assertEquals(run(input), run(input, "--parallel"));
+    }
+
+    @Test
+    public void testConvertBlocksKeepsSpec() throws IOException {
+        Path config = Files.createTempFile("enigma", ".conf");
+        try {
+            Files.write(config, CONFIG.getBytes(StandardCharsets.UTF_8));
+            Machine m = Main.configure(config.toString());
+            String input = "* B Beta III IV I AXLE (HQ) (EX)\n"
+                + "FROMHISSHOULDERHIAWATHA\n";
+            String first = convertBlocks(m, input);
+            MachineSpec spec = m.spec();
+            assertEquals(first, convertBlocks(m, input));
+            assertSame(spec, m.spec());
+            convertBlocks(m, "* B Beta III IV I AXLE (HQ) (EX)\n"
+                          + "* B Beta I IV III AXLE (HQ) (EX)\n");
+            assertNotSame(spec, m.spec());
+        } finally {
+            Files.delete(config);
+        }
+    }
+
+    @Test
+    public void testBinaryCheckpointKeepsOutput() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        Path config = dir.resolve("bytes.conf");
+        Path in = dir.resolve("input.bin");
+        Path out = dir.resolve("output.bin");
+        Path saved = dir.resolve("checkpoint");
+        byte[] kept = "OUTPUT OF AN EARLIER RUN\n"
+            .getBytes(StandardCharsets.UTF_8);
+        Files.write(config, "*BYTES 2 1 R R F M00\n"
+                    .getBytes(StandardCharsets.UTF_8));
+        Files.write(in, new byte[16]);
+        Files.write(out, kept);
+        new Checkpoint(16, 8, 4, "* R F 00", "00").write(saved);
+        try {
+            new Main(new String[] {"--checkpoint=" + saved, "--resume",
+                                   config.toString(), in.toString(),
+                                   out.toString()}).process();
+            fail("binary input accepted with --checkpoint");
+        } catch (EnigmaException excp) {
+            assertEquals("--checkpoint does not apply to binary input",
+                         excp.getMessage());
+        }
+        try {
+            assertArrayEquals(kept, Files.readAllBytes(out));
+        } finally {
+            for (Path file : new Path[] {config, in, out, saved, dir}) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void testRingSettingLines() throws IOException {
+        String msg = "\nFROMHISSHOULDERHIAWATHA\n";
+        String plain = run("* B Beta III IV I AXLE (HQ) (EX)" + msg);
+        assertEquals(plain, run("* B Beta III IV I AXLE AAAA (HQ) (EX)"
+                                + msg));
+        assertNotEquals(plain, run("* B Beta III IV I AXLE BCDE (HQ) (EX)"
+                                   + msg));
+    }
+
+    @Test
+    public void testMalformedSettingsLines() throws IOException {
+        String wrong = "Settings line has wrong number of arguments.";
+        String msg = "\nFROMHISSHOULDERHIAWATHA\n";
+        assertEquals(wrong, error("*  B Beta III IV I AXLE (HQ)" + msg));
+        assertEquals(wrong, error("* B Beta III  IV I AXLE (HQ)" + msg));
+        assertEquals(wrong, error("* B Beta III IV I  AXLE (HQ)" + msg));
+        assertEquals(wrong, error("* B Beta III IV I AXLE  AAAA (HQ)"
+                                  + msg));
+        assertEquals(wrong, error("* B Beta III IV I AXLE AAAA BBBB" + msg));
+    }
+}
@@ -0,0 +1,284 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/** A MessageSource that reads a file through memory-mapped windows,
+ *  splitting lines and skipping whitespace directly on the bytes.  Lines
+ *  made up entirely of ASCII bytes are widened straight into a reusable
+ *  char array; any other line is decoded with the default charset, which
+ *  must encode line terminators and ASCII whitespace as single bytes.
+ *  @author David Oh
+ */
+class MappedSource implements MessageSource {
+
+    /** A source reading the file named NAME from its beginning. */
+    MappedSource(String name) {
+        try {
+            _channel = new RandomAccessFile(name, "r").getChannel();
+            _size = _channel.size();
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        _name = name;
+        _decoder = Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** A source reading the same file as BASE, starting at byte offset
+     *  START, which should be the beginning of a line.  The new source
+     *  shares BASE's channel but has its own position and buffers, so
+     *  the two may be used from different threads. */
+    MappedSource(MappedSource base, long start) {
+        _channel = base._channel;
+        _size = base._size;
+        _name = base._name;
+        _decoder = Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _pos = start;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return skipWhitespace(_pos) < _size;
+    }
+
+    @Override
+    public boolean hasNextSetting() {
+        long p = skipWhitespace(_pos);
+        return p < _size && byteAt(p) == '*'
+            && (p + 1 == _size || isWhitespace(byteAt(p + 1)));
+    }
+
+    @Override
+    public boolean hasNextLine() {
+        return _pos < _size;
+    }
+
+    @Override
+    public CharSequence nextLine() {
+        int len = 0;
+        boolean ascii = true;
+        while (_pos < _size) {
+            mapWindow(_pos);
+            int i = (int) (_pos - _windowStart);
+            int limit = _window.limit();
+            int start = i;
+            byte b = 0;
+            while (i < limit) {
+                b = _window.get(i);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                ascii &= b >= 0;
+                i += 1;
+            }
+            len = append(len, start, i);
+            _pos = _windowStart + i;
+            if (i < limit) {
+                _pos += 1;
+                if (b == '\r' && _pos < _size && byteAt(_pos) == '\n') {
+                    _pos += 1;
+                }
+                break;
+            }
+        }
+        return decode(len, ascii);
+    }
+
+    /** Move past a settings block: any blank lines, the settings line
+     *  after them, and the message lines that follow up to the next line
+     *  whose first token is "*".  Blank lines just before that line are
+     *  left unread, as they belong to the next block.  This stops where
+     *  Main stops reading a block, without decoding or converting it. */
+    void skipBlock() {
+        long end = _pos;
+        boolean first = true;
+        while (_pos < _size) {
+            long p = skipSpacesAndTabs(_pos);
+            if (p == _size || isLineEnd(byteAt(p))) {
+                skipLine();
+                continue;
+            }
+            if (!first && byteAt(p) == '*'
+                && (p + 1 == _size || isWhitespace(byteAt(p + 1)))) {
+                break;
+            }
+            first = false;
+            skipLine();
+            end = _pos;
+        }
+        _pos = end;
+    }
+
+    /** Return my position, as a byte offset into the file. */
+    long position() {
+        return _pos;
+    }
+
+    /** Continue reading from byte offset POSITION, which should be the
+     *  beginning of a line. */
+    void seek(long position) {
+        if (position < 0 || position > _size) {
+            throw error("offset %d is outside %s", position, _name);
+        }
+        _pos = position;
+    }
+
+    /** Return the size of my file in bytes. */
+    long size() {
+        return _size;
+    }
+
+    /** Return the name of my file. */
+    String name() {
+        return _name;
+    }
+
+    /** Returns true iff byte B is whitespace in the sense of
+     *  Character.isWhitespace. */
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r')
+            || (b >= '\u001c' && b <= '\u001f');
+    }
+
+    /** Returns true iff B terminates a line. */
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /** Return the offset of the first byte at or after P that is not
+     *  whitespace other than a line terminator, or my size if there is
+     *  none. */
+    private long skipSpacesAndTabs(long p) {
+        while (p < _size && isWhitespace(byteAt(p))
+               && !isLineEnd(byteAt(p))) {
+            p += 1;
+        }
+        return p;
+    }
+
+    /** Move past the rest of the current line and its terminator. */
+    private void skipLine() {
+        while (_pos < _size && !isLineEnd(byteAt(_pos))) {
+            _pos += 1;
+        }
+        if (_pos < _size) {
+            byte b = byteAt(_pos);
+            _pos += 1;
+            if (b == '\r' && _pos < _size && byteAt(_pos) == '\n') {
+                _pos += 1;
+            }
+        }
+    }
+
+    /** Return the offset of the first non-whitespace byte at or after P,
+     *  or my size if there is none. */
+    private long skipWhitespace(long p) {
+        while (p < _size && isWhitespace(byteAt(p))) {
+            p += 1;
+        }
+        return p;
+    }
+
+    /** Return the byte at offset P, which must be less than my size. */
+    private byte byteAt(long p) {
+        mapWindow(p);
+        return _window.get((int) (p - _windowStart));
+    }
+
+    /** Make sure that offset P, which must be less than my size, falls
+     *  inside the current window. */
+    private void mapWindow(long p) {
+        if (_window != null && p >= _windowStart
+            && p < _windowStart + _window.limit()) {
+            return;
+        }
+        try {
+            _windowStart = p;
+            _window = _channel.map(FileChannel.MapMode.READ_ONLY, p,
+                                   Math.min(WINDOW_SIZE, _size - p));
+        } catch (IOException excp) {
+            throw error("could not read %s", _name);
+        }
+    }
+
+    /** Append bytes FROM .. TO-1 of the current window to _bytes, which
+     *  already holds LEN bytes, and return the new length. */
+    private int append(int len, int from, int to) {
+        int n = to - from;
+        if (len + n > _bytes.length) {
+            byte[] bigger = new byte[Math.max(len + n, 2 * _bytes.length)];
+            System.arraycopy(_bytes, 0, bigger, 0, len);
+            _bytes = bigger;
+        }
+        ByteBuffer view = _window.duplicate();
+        view.position(from);
+        view.get(_bytes, len, n);
+        return len + n;
+    }
+
+    /** Return the first LEN bytes of _bytes as characters.  ASCII is
+     *  true iff they are all ASCII. */
+    private CharBuffer decode(int len, boolean ascii) {
+        if (_chars.length < len) {
+            _chars = new char[Math.max(len, 2 * _chars.length)];
+        }
+        if (ascii) {
+            for (int i = 0; i < len; i += 1) {
+                _chars[i] = (char) _bytes[i];
+            }
+            return CharBuffer.wrap(_chars, 0, len);
+        }
+        CharBuffer result = CharBuffer.wrap(_chars);
+        _decoder.reset();
+        _decoder.decode(ByteBuffer.wrap(_bytes, 0, len), result, true);
+        _decoder.flush(result);
+        result.flip();
+        return result;
+    }
+
+    /** Largest number of bytes mapped at once. */
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    /** Initial size of the line buffers. */
+    private static final int LINE_SIZE = 1 << 13;
+
+    /** Name of the file I read. */
+    private final String _name;
+
+    /** Channel for the file I read. */
+    private final FileChannel _channel;
+
+    /** Size of the file in bytes. */
+    private final long _size;
+
+    /** Offset of the next unread byte. */
+    private long _pos;
+
+    /** Currently mapped region of the file. */
+    private MappedByteBuffer _window;
+
+    /** Offset of the first byte of _window within the file. */
+    private long _windowStart;
+
+    /** Decoder for lines that are not pure ASCII. */
+    private final CharsetDecoder _decoder;
+
+    /** Bytes of the line most recently read. */
+    private byte[] _bytes = new byte[LINE_SIZE];
+
+    /** Characters of the line most recently read. */
+    private char[] _chars = new char[LINE_SIZE];
+}
@@ -0,0 +1,27 @@
+package enigma;
+
+/** Describes a source of input for Main: settings lines, each starting
+ *  with a "*" token, followed by message lines.  The operations mirror
+ *  those of a java.util.Scanner with its default whitespace delimiter.
+ *  @author David Oh
+ */
+interface MessageSource {
+
+    /** Returns true iff any non-whitespace input remains. */
+    boolean hasNext();
+
+    /** Returns true iff the next whitespace-delimited token is "*", that
+     *  is, iff the next non-blank line is a settings line. */
+    boolean hasNextSetting();
+
+    /** Returns true iff any input at all remains, even if it is only
+     *  whitespace. */
+    boolean hasNextLine();
+
+    /** Returns the rest of the current line, not including its line
+     *  terminator, and moves past the terminator.  The result may share
+     *  storage with this source and is only valid until the next call
+     *  on it. */
+    CharSequence nextLine();
+
+}
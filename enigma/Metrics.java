@@ -0,0 +1,251 @@
+package enigma;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** Optional counts and timings of the stages of a run, and of the
+ *  characters converted and memory allocated.  They are collected only
+ *  if the system property enigma.metrics is true (for example,
+ *  "java -Denigma.metrics=true enigma.Main ...").  Since ENABLED is then
+ *  a constant, the JIT compiler removes the instrumentation entirely
+ *  when it is false.  When enabled, the metrics are published as the
+ *  MBean enigma:type=Metrics, and a JSON summary is written at exit to
+ *  the file named by the system property enigma.metrics.file, or else
+ *  to the standard error.  Instrumented code brackets a stage as
+ *
+ *      long start = Metrics.start();
+ *      ...
+ *      Metrics.stop(Metrics.CONVERT, start);
+ *
+ *  @author David Oh
+ */
+final class Metrics implements MetricsMBean {
+
+    /** True iff metrics are collected. */
+    static final boolean ENABLED = Boolean.getBoolean("enigma.metrics");
+
+    /** Stage that reads a configuration. */
+    static final int CONFIG = 0;
+
+    /** Stage that parses a settings line and sets up the machine. */
+    static final int SETTINGS = 1;
+
+    /** Stage that reads a message line and strips its whitespace. */
+    static final int INPUT = 2;
+
+    /** Stage that checks and converts a message line. */
+    static final int CONVERT = 3;
+
+    /** Stage that formats and writes a converted message line. */
+    static final int OUTPUT = 4;
+
+    /** Names of the stages, indexed by stage. */
+    private static final String[] STAGES = {
+        "config", "settings", "input", "convert", "output"
+    };
+
+    /** Return the time at which a stage starts, for stop(). */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /** Record that STAGE, which started at time START, has ended. */
+    static void stop(int stage, long start) {
+        if (ENABLED) {
+            INSTANCE.add(stage, System.nanoTime() - start);
+        }
+    }
+
+    /** Record the conversion of N message characters. */
+    static void characters(long n) {
+        if (ENABLED) {
+            INSTANCE._characters.add(n);
+        }
+    }
+
+    /** Metrics for a run starting now. */
+    Metrics() {
+        _counts = new LongAdder[STAGES.length];
+        _nanos = new LongAdder[STAGES.length];
+        for (int i = 0; i < STAGES.length; i += 1) {
+            _counts[i] = new LongAdder();
+            _nanos[i] = new LongAdder();
+        }
+        _started = System.nanoTime();
+    }
+
+    /** Record one run of STAGE taking NANOS nanoseconds, and the memory
+     *  the current thread has allocated since it last recorded a run. */
+    void add(int stage, long nanos) {
+        _counts[stage].increment();
+        _nanos[stage].add(nanos);
+        if (ALLOCATIONS != null) {
+            long allocated = ALLOCATIONS.getCurrentThreadAllocatedBytes();
+            long[] last = _lastAllocated.get();
+            _allocated.add(allocated - last[0]);
+            last[0] = allocated;
+        }
+    }
+
+    @Override
+    public String[] getStages() {
+        return STAGES.clone();
+    }
+
+    @Override
+    public long[] getCounts() {
+        long[] result = new long[STAGES.length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = _counts[i].sum();
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getNanos() {
+        long[] result = new long[STAGES.length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = _nanos[i].sum();
+        }
+        return result;
+    }
+
+    @Override
+    public long getCharacters() {
+        return _characters.sum();
+    }
+
+    @Override
+    public double getCharactersPerSecond() {
+        return perSecond(getCharacters());
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return ALLOCATIONS == null ? -1 : _allocated.sum();
+    }
+
+    @Override
+    public double getAllocatedBytesPerSecond() {
+        long bytes = getAllocatedBytes();
+        return bytes < 0 ? -1 : perSecond(bytes);
+    }
+
+    @Override
+    public String getSummary() {
+        long[] counts = getCounts();
+        long[] nanos = getNanos();
+        StringBuilder json = new StringBuilder("{\"stages\": {");
+        for (int i = 0; i < STAGES.length; i += 1) {
+            json.append(i == 0 ? "" : ", ")
+                .append(String.format(Locale.ROOT,
+                                      "\"%s\": {\"count\": %d, \"nanos\": %d}",
+                                      STAGES[i], counts[i], nanos[i]));
+        }
+        json.append(String.format(Locale.ROOT,
+                                  "}, \"elapsedNanos\": %d, "
+                                  + "\"characters\": %d, "
+                                  + "\"charactersPerSecond\": %.1f, "
+                                  + "\"allocatedBytes\": %d, "
+                                  + "\"allocatedBytesPerSecond\": %.1f}",
+                                  System.nanoTime() - _started,
+                                  getCharacters(), getCharactersPerSecond(),
+                                  getAllocatedBytes(),
+                                  getAllocatedBytesPerSecond()));
+        return json.toString();
+    }
+
+    /** Return N per second of time since I started. */
+    private double perSecond(long n) {
+        long elapsed = Math.max(1, System.nanoTime() - _started);
+        return n * 1e9 / elapsed;
+    }
+
+    /** Return the JVM's means of measuring the memory allocated by a
+     *  thread, or null if it has none. */
+    private static com.sun.management.ThreadMXBean allocations() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean result =
+                (com.sun.management.ThreadMXBean) threads;
+            if (result.isThreadAllocatedMemorySupported()
+                && result.isThreadAllocatedMemoryEnabled()) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /** Publish INSTANCE as an MBean and arrange for its summary to be
+     *  written at exit.  Failure to publish is not an error. */
+    private static void install() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                INSTANCE, new ObjectName("enigma:type=Metrics"));
+        } catch (JMException excp) {
+            /* Ignore. */
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(Metrics::dump));
+    }
+
+    /** Write INSTANCE's summary to the file named by enigma.metrics.file,
+     *  or to the standard error if there is none or it cannot be
+     *  opened. */
+    private static void dump() {
+        String summary = INSTANCE.getSummary();
+        String file = System.getProperty("enigma.metrics.file");
+        if (file != null) {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write((summary + "\n").getBytes(StandardCharsets.UTF_8));
+                return;
+            } catch (IOException excp) {
+                /* Fall back to the standard error. */
+            }
+        }
+        System.err.println(summary);
+        System.err.flush();
+    }
+
+    /** Source of per-thread allocation counts, or null if there is none
+     *  or metrics are not collected. */
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS =
+        ENABLED ? allocations() : null;
+
+    /** The metrics of this run, or null if they are not collected. */
+    private static final Metrics INSTANCE = ENABLED ? new Metrics() : null;
+
+    static {
+        if (ENABLED) {
+            install();
+        }
+    }
+
+    /** Number of runs of each stage. */
+    private final LongAdder[] _counts;
+
+    /** Total nanoseconds spent in each stage. */
+    private final LongAdder[] _nanos;
+
+    /** Number of message characters converted. */
+    private final LongAdder _characters = new LongAdder();
+
+    /** Bytes allocated by threads that have recorded stage runs, up to
+     *  their latest ones. */
+    private final LongAdder _allocated = new LongAdder();
+
+    /** Bytes the current thread had allocated at its latest recorded
+     *  stage run. */
+    private final ThreadLocal<long[]> _lastAllocated =
+        ThreadLocal.withInitial(() -> new long[1]);
+
+    /** Time at which I was created. */
+    private final long _started;
+}
@@ -0,0 +1,37 @@
+package enigma;
+
+/** The management interface through which Metrics are published over
+ *  JMX, under the name enigma:type=Metrics.  Stage arrays are indexed
+ *  like getStages().
+ *  @author David Oh
+ */
+public interface MetricsMBean {
+
+    /** Return the names of the stages that are timed. */
+    String[] getStages();
+
+    /** Return the number of times each stage has run. */
+    long[] getCounts();
+
+    /** Return the total time spent in each stage, in nanoseconds. */
+    long[] getNanos();
+
+    /** Return the number of message characters converted. */
+    long getCharacters();
+
+    /** Return the number of message characters converted per second
+     *  since the run started. */
+    double getCharactersPerSecond();
+
+    /** Return the number of bytes allocated by the threads that ran the
+     *  stages, up to the latest stage each ran, or -1 if the JVM cannot
+     *  measure it. */
+    long getAllocatedBytes();
+
+    /** Return getAllocatedBytes() per second since the run started, or
+     *  -1 if the JVM cannot measure it. */
+    double getAllocatedBytesPerSecond();
+
+    /** Return all of the above as a JSON object. */
+    String getSummary();
+}
@@ -0,0 +1,51 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+
+/** The suite of all JUnit tests for the Metrics class.
+ *  @author David Oh
+ */
+public class MetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testCountsAndNanos() {
+        Metrics metrics = new Metrics();
+        metrics.add(Metrics.CONVERT, 100);
+        metrics.add(Metrics.CONVERT, 50);
+        metrics.add(Metrics.OUTPUT, 7);
+        assertEquals("convert", metrics.getStages()[Metrics.CONVERT]);
+        assertEquals(2, metrics.getCounts()[Metrics.CONVERT]);
+        assertEquals(150, metrics.getNanos()[Metrics.CONVERT]);
+        assertEquals(1, metrics.getCounts()[Metrics.OUTPUT]);
+        assertEquals(0, metrics.getCounts()[Metrics.CONFIG]);
+    }
+
+    @Test
+    public void testSummary() {
+        Metrics metrics = new Metrics();
+        metrics.add(Metrics.SETTINGS, 42);
+        String summary = metrics.getSummary();
+        assertTrue(summary.startsWith("{\"stages\": {\"config\": "));
+        assertTrue(summary.contains(
+            "\"settings\": {\"count\": 1, \"nanos\": 42}"));
+        assertTrue(summary.contains("\"characters\": 0,"));
+        assertTrue(summary.endsWith("}"));
+    }
+
+    @Test
+    public void testCompliantMBean() throws NotCompliantMBeanException {
+        new StandardMBean(new Metrics(), MetricsMBean.class);
+    }
+}
@@ -15,6 +15,30 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
+        int size = perm.size();
+        _notchBits = new long[(size + 63) >>> 6];
+        for (int i = 0; i < notches.length(); i += 1) {
+            int posn = alphabet().toInt(notches.charAt(i));
+            if (posn >= 0) {
+                _notchBits[posn >>> 6] |= 1L << posn;
+            }
+        }
+        _notchDistance = new int[size];
+        int next = -1;
+        for (int k = 2 * size - 1; k >= 0; k -= 1) {
+            int posn = k % size;
+            if (notchAt(posn)) {
+                next = k;
+            }
+            if (k < size) {
+                _notchDistance[posn] = next < 0 ? -1 : next - k;
+            }
+        }
+    }
+
+    /** Return the characters at which I have notches. */
+    String notches() {
+        return _notches;
     }
 
     @Override
@@ -24,12 +48,22 @@ class MovingRotor extends Rotor {
 
     @Override
     boolean atNotch() {
-        String currentLetterSetting = "";
-        currentLetterSetting += alphabet().toChar(setting());
-        if (_notches.contains(currentLetterSetting)) {
-            return true;
-        }
-        return false;
+        return notchAt(setting());
+    }
+
+    @Override
+    boolean notchAt(int posn) {
+        return posn >= 0 && (_notchBits[posn >>> 6] & (1L << posn)) != 0;
+    }
+
+    @Override
+    int notchDistance(int posn) {
+        return _notchDistance[posn];
+    }
+
+    @Override
+    Rotor duplicate() {
+        return new MovingRotor(name(), permutation(), _notches);
     }
 
     @Override
@@ -39,4 +73,11 @@ class MovingRotor extends Rotor {
 
     /** Instance variable is a String representing notch locations. */
     private String _notches;
+
+    /** Positions of my notches, as a bit set. */
+    private final long[] _notchBits;
+
+    /** Number of advances from each position to the next notch, or -1
+     *  if I have no notches. */
+    private final int[] _notchDistance;
 }
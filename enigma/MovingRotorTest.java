@@ -71,4 +71,20 @@ public class MovingRotorTest {
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
 
+    @Test
+    public void checkNotches() {
+        setRotor("I", NAVALA, "QZ");
+        assertFalse(rotor.atNotch());
+        rotor.set(16);
+        assertTrue(rotor.atNotch());
+        assertTrue(rotor.notchAt(25));
+        assertFalse(rotor.notchAt(0));
+        assertEquals(0, rotor.notchDistance(16));
+        assertEquals(16, rotor.notchDistance(0));
+        assertEquals(8, rotor.notchDistance(17));
+        assertEquals(0, rotor.notchDistance(25));
+        setRotor("I", NAVALA, "");
+        assertEquals(-1, rotor.notchDistance(3));
+    }
+
 }
@@ -0,0 +1,175 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** A Scorer that scores a text by the sum of the base-10 logarithms of
+ *  the probabilities of its n-grams (its runs of N consecutive
+ *  characters) in some reference language, as estimated from n-gram
+ *  counts.  The probabilities are kept in a table indexed by the n-gram
+ *  read as an N-digit number in base alphabet size, which copies share.
+ *  @author David Oh
+ */
+class NGramScorer implements Scorer {
+
+    /** A scorer for N-grams of an alphabet of SIZE characters, whose
+     *  log probabilities are TABLE. */
+    NGramScorer(float[] table, int n, int size) {
+        long entries = 1;
+        for (int i = 0; i < n; i += 1) {
+            entries *= size;
+        }
+        if (n < 1 || entries != table.length) {
+            throw error("n-gram table has the wrong size");
+        }
+        _table = table;
+        _n = n;
+        _size = size;
+        _prefixes = table.length / size;
+        float max = Float.NEGATIVE_INFINITY;
+        for (float p : table) {
+            max = Math.max(max, p);
+        }
+        _max = max;
+    }
+
+    /** Return a scorer for the n-grams of ALPHABET counted in the file
+     *  named NAME, each line of which is an n-gram followed by the number
+     *  of times it occurs.  All n-grams must have the same length.
+     *  N-grams that do not occur are given a probability a hundredth of
+     *  that of one occurrence. */
+    static NGramScorer load(String name, Alphabet alphabet) {
+        int size = alphabet.size();
+        int n = 0;
+        long[] counts = null;
+        long total = 0;
+        try (Scanner input = new Scanner(new File(name))) {
+            while (input.hasNext()) {
+                String gram = input.next();
+                if (!input.hasNextLong()) {
+                    throw error("missing count for n-gram %s", gram);
+                }
+                long count = input.nextLong();
+                if (counts == null) {
+                    n = gram.length();
+                    if (n < 1 || Math.pow(size, n) > MAX_ENTRIES) {
+                        throw error("n-grams of length %d are not "
+                                    + "supported", n);
+                    }
+                    counts = new long[(int) Math.pow(size, n)];
+                } else if (gram.length() != n) {
+                    throw error("n-gram %s is not of length %d", gram, n);
+                }
+                int index = 0;
+                for (int i = 0; i < n; i += 1) {
+                    int c = alphabet.toInt(gram.charAt(i));
+                    if (c < 0) {
+                        throw error("n-gram %s is not in the alphabet",
+                                    gram);
+                    }
+                    index = index * size + c;
+                }
+                counts[index] += count;
+                total += count;
+            }
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        if (counts == null || total <= 0) {
+            throw error("no n-gram counts in %s", name);
+        }
+        float[] table = new float[counts.length];
+        float floor = (float) Math.log10(UNSEEN / total);
+        for (int i = 0; i < table.length; i += 1) {
+            table[i] = counts[i] == 0 ? floor
+                : (float) Math.log10((double) counts[i] / total);
+        }
+        return new NGramScorer(table, n, size);
+    }
+
+    @Override
+    public void start(int n) {
+        _length = n;
+        _added = 0;
+        _window = 0;
+        _score = 0;
+    }
+
+    @Override
+    public void add(int c) {
+        _window = (_window % _prefixes) * _size + c;
+        _added += 1;
+        if (_added >= _n) {
+            _score += _table[_window];
+        }
+    }
+
+    @Override
+    public double score() {
+        return _score;
+    }
+
+    /** Returns the score the text would have if each of its remaining
+     *  n-grams were the most probable one. */
+    @Override
+    public double bound() {
+        int grams = Math.max(0, _length - _n + 1);
+        int scored = Math.max(0, _added - _n + 1);
+        return _score + (double) (grams - scored) * _max;
+    }
+
+    @Override
+    public Scorer copy() {
+        return new NGramScorer(_table, _n, _size, _prefixes, _max);
+    }
+
+    /** A scorer sharing TABLE, whose largest entry is MAX, for N-grams
+     *  of an alphabet of SIZE characters, where PREFIXES is the number of
+     *  (N-1)-grams. */
+    private NGramScorer(float[] table, int n, int size, int prefixes,
+                        float max) {
+        _table = table;
+        _n = n;
+        _size = size;
+        _prefixes = prefixes;
+        _max = max;
+    }
+
+    /** Largest number of entries in a table. */
+    private static final int MAX_ENTRIES = 1 << 26;
+
+    /** Number of occurrences assumed for an n-gram that was not
+     *  counted. */
+    private static final double UNSEEN = 0.01;
+
+    /** Log probability of each n-gram. */
+    private final float[] _table;
+
+    /** Length of my n-grams. */
+    private final int _n;
+
+    /** Size of my alphabet. */
+    private final int _size;
+
+    /** Number of (n-1)-grams, by which the index of the last n
+     *  characters is reduced before adding another. */
+    private final int _prefixes;
+
+    /** Largest entry of _table. */
+    private final float _max;
+
+    /** Length of the text being scored. */
+    private int _length;
+
+    /** Number of characters added so far. */
+    private int _added;
+
+    /** Index of the last n characters added. */
+    private int _window;
+
+    /** Sum of the log probabilities of the n-grams added so far. */
+    private double _score;
+}
@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
@@ -12,7 +14,8 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace is ignored.  The c's of the byte alphabet are written
+     *  as pairs of hexadecimal digits. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
         int leftParenthesis = 0;
@@ -32,7 +35,7 @@ class Permutation {
         _allCycles = new String[splitCycles.length / 2];
         int j = 0;
         for (int k = 1; k < splitCycles.length; k += 2) {
-            _allCycles[j] = splitCycles[k];
+            _allCycles[j] = alphabet.decode(splitCycles[k]);
             j += 1;
         }
         for (String cycle : _allCycles) {
@@ -43,20 +46,51 @@ class Permutation {
                 }
             }
         }
-        _arrayOfLinkedCycles = new java.util.ArrayList<CharList>();
+        _forward = new int[size()];
+        _inverse = new int[size()];
+        for (int i = 0; i < size(); i += 1) {
+            _forward[i] = i;
+            _inverse[i] = i;
+        }
         for (String c : _allCycles) {
             if (c.length() > 1) {
-                _arrayOfLinkedCycles.add(linkedCycleMaker(c));
+                addCycle(c);
+            }
+        }
+    }
+
+    /** Set this Permutation to the one mapping each index K of ALPHABET
+     *  to FORWARD[K], which must hold each index exactly once. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        _alphabet = alphabet;
+        if (forward.length != size()) {
+            throw new EnigmaException("Malformed permutation table.");
+        }
+        _forward = forward.clone();
+        _inverse = new int[size()];
+        Arrays.fill(_inverse, -1);
+        for (int i = 0; i < _forward.length; i += 1) {
+            int to = _forward[i];
+            if (to < 0 || to >= size() || _inverse[to] >= 0) {
+                throw new EnigmaException("Malformed permutation table.");
             }
+            _inverse[to] = i;
         }
-        _permutation = constructPermutation();
-        _invertedPermutation = constructInvertedPermutation();
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      *  c0c1...cm. */
     private void addCycle(String cycle) {
-        _arrayOfLinkedCycles.add(linkedCycleMaker(cycle));
+        int first = _alphabet.toInt(cycle.charAt(0));
+        int from = first;
+        for (int k = 1; k < cycle.length(); k += 1) {
+            int to = _alphabet.toInt(cycle.charAt(k));
+            _forward[from] = to;
+            _inverse[to] = from;
+            from = to;
+        }
+        _forward[from] = first;
+        _inverse[first] = from;
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -76,40 +110,40 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        int intMod = wrap(p);
-        char letterOfAlphabet = _alphabet.toChar(intMod);
-        return _alphabet.toInt(permute(letterOfAlphabet));
+        if (p < 0 || p >= _forward.length) {
+            p = wrap(p);
+        }
+        return _forward[p];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        int intMod = wrap(c);
-        char letterOfAlphabet = _alphabet.toChar(intMod);
-        return _alphabet.toInt(invert(letterOfAlphabet));
+        if (c < 0 || c >= _inverse.length) {
+            c = wrap(c);
+        }
+        return _inverse[c];
     }
 
     /** Return the result of applying this permutation to the index of P
-     *  in ALPHABET, and converting the result to a character of ALPHABET. */
+     *  in ALPHABET, and converting the result to a character of ALPHABET.
+     *  Characters outside ALPHABET map to themselves. */
     char permute(char p) {
-        for (int i = 0; i < _permutation.length; i += 1) {
-            if (p == _permutation[i]) {
-                int index = _alphabet.toInt(p);
-                return _permutation[index];
-            }
+        int index = _alphabet.toInt(p);
+        if (index < 0) {
+            return p;
         }
-        return p;
+        return _alphabet.toChar(_forward[index]);
     }
 
-    /** Return the result of applying the inverse of this permutation to C. */
+    /** Return the result of applying the inverse of this permutation to C.
+     *  Characters outside ALPHABET map to themselves. */
     char invert(char c) {
-        for (int i = 0; i < _invertedPermutation.length; i += 1) {
-            if (c == _invertedPermutation[i]) {
-                int index = _alphabet.toInt(c);
-                return _invertedPermutation[index];
-            }
+        int index = _alphabet.toInt(c);
+        if (index < 0) {
+            return c;
         }
-        return c;
+        return _alphabet.toChar(_inverse[index]);
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -120,120 +154,25 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        int numberOfLettersInCycles = 0;
-        for (String cycle : _allCycles) {
-            numberOfLettersInCycles += cycle.length();
+        for (int i = 0; i < _forward.length; i += 1) {
+            if (_forward[i] == i) {
+                return false;
+            }
         }
-
-        return numberOfLettersInCycles == size();
+        return true;
     }
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** This method takes each string in the String array of cycles
-     *  and constructs a cyclical linked list where each HEAD is is the
-     *  character.
-     *
-     * @param s : a String representing a cycle
-     * @return a char linked list*/
-    public CharList linkedCycleMaker(String s) {
-        CharList last = new CharList(s.charAt(0), null);
-        CharList first = last;
-        int k = 1;
-        int i = 1;
-        while (k < s.length()) {
-            first = new CharList(s.charAt(k), first);
-            k += 1;
-        }
-        last.tail = first;
-        return first;
-    }
-
-    /** This method uses all of the linked cycles to create
-     *  a charArray of the new permutation, where each permuted
-     *  character is in the index of the original letter in the
-     *  alphabet. Returns the CharList.*/
-    char[] constructPermutation() {
-        char[] permutation = new char[size()];
-        for (CharList c : _arrayOfLinkedCycles) {
-            CharList last = c;
-            char currentLetter = last.tail.head;
-            char mapTo = last.head;
-            int index = _alphabet.toInt(currentLetter);
-            permutation[index] = mapTo;
-            CharList pointer = c.tail;
-            while (pointer != last) {
-                currentLetter = pointer.tail.head;
-                mapTo = pointer.head;
-                index = _alphabet.toInt(currentLetter);
-                permutation[index] = mapTo;
-                pointer = pointer.tail;
-            }
-        }
-        return permutation;
-    }
-
-    /** This method uses all of the linked cycles to create
-     *  a charArray of the new inverted permutation, where each
-     *  permuted character is in the index of the original letter in the
-     *  alphabet. Returns the CharList.*/
-    char[] constructInvertedPermutation() {
-        char[] invertedPerm = new char[size()];
-        for (CharList c : _arrayOfLinkedCycles) {
-            CharList last = c;
-            char currentLetter = last.head;
-            char mapTo = last.tail.head;
-            int index = _alphabet.toInt(currentLetter);
-            invertedPerm[index] = mapTo;
-            CharList pointer = c.tail;
-            while (pointer != last) {
-                currentLetter = pointer.head;
-                mapTo = pointer.tail.head;
-                index = _alphabet.toInt(currentLetter);
-                invertedPerm[index] = mapTo;
-                pointer = pointer.tail;
-            }
-        }
-        return invertedPerm;
-    }
-
     /** Instance variable String array of all the cycles. */
     private String[] _allCycles;
 
-    /** Instance variable _permutation is a char array where each permuted
-     *  letter is indexed by the original letter's index in alphabet. */
-    private char[] _permutation;
-
-    /** Instance variable _invertedPermutation is a char array where each
-     *  inverted letter is indexed by the original letter's index in
-     *  alphabet. */
-    private char[] _invertedPermutation;
-
-    /** ArrayList of type char contains linked list representation of each
-     *  cycle. */
-    private java.util.ArrayList<CharList> _arrayOfLinkedCycles;
-
-    /** Nested class CharList for the linked list implementation of cycles. */
-    public class CharList {
-
-        /** CharList constructor.
-         * @param c : character
-         * @param l : CharList */
-        CharList(char c, CharList l) {
-            head = c;
-            tail = l;
-        }
-        /** Default CharList constructor. */
-        CharList() { }
-
-        /** Head of linked list holds a character value. */
-        private char head;
-
-        /** Tail of linked list is another char linked list. */
-        private CharList tail;
-    }
+    /** Instance variable _forward maps the index of each letter in
+     *  alphabet to the index of the letter it is permuted to. */
+    private int[] _forward;
 
+    /** Instance variable _inverse maps the index of each letter in
+     *  alphabet to the index of the letter that is permuted to it. */
+    private int[] _inverse;
 }
-
-
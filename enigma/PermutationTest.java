@@ -69,6 +69,28 @@ public class PermutationTest {
         assertNotEquals(true, perm.derangement());
     }
 
+    @Test
+    public void testIntPermuteAndInvert() {
+        perm = new Permutation("(BACD) (EF)", new Alphabet("ABCDEFG"));
+        assertEquals(0, perm.permute(1));
+        assertEquals(2, perm.permute(0));
+        assertEquals(1, perm.permute(3));
+        assertEquals(5, perm.permute(4));
+        assertEquals(6, perm.permute(6));
+        assertEquals(3, perm.invert(1));
+        assertEquals(4, perm.invert(5));
+        assertEquals(2, perm.permute(7));
+        assertEquals(3, perm.invert(-6));
+    }
+
+    @Test
+    public void testDerangement() {
+        perm = new Permutation("(AB) (CD)", new Alphabet("ABCD"));
+        assertTrue(perm.derangement());
+        perm = new Permutation("(AB) (C) (D)", new Alphabet("ABCD"));
+        assertFalse(perm.derangement());
+    }
+
     @Test
     public void checkIdTransform() {
         perm = new Permutation("", UPPER);
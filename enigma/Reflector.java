@@ -18,6 +18,11 @@ class Reflector extends FixedRotor {
         return true;
     }
 
+    @Override
+    Rotor duplicate() {
+        return new Reflector(name(), permutation());
+    }
+
     @Override
     void set(int posn) {
         if (posn != 0) {
@@ -59,23 +59,36 @@ class Rotor {
         _currentSetting = alphabet().toInt(cposn);
     }
 
+    /** Return my ring setting: the position of my permutation's contacts
+     *  relative to the alphabet ring, which my notches are fixed to. */
+    int ring() {
+        return _ring;
+    }
+
+    /** Set ring() to RING. */
+    void setRing(int ring) {
+        _ring = ring;
+    }
+
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int contactEntered = _permutation.wrap(p + _currentSetting);
+        int offset = _currentSetting - _ring;
+        int contactEntered = _permutation.wrap(p + offset);
         int translatedAccordingToPerm = _permutation.permute(contactEntered);
         int positionExited = _permutation.wrap(
-                translatedAccordingToPerm - _currentSetting);
+                translatedAccordingToPerm - offset);
         return positionExited;
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int contactEntered = _permutation.wrap(e + _currentSetting);
+        int offset = _currentSetting - _ring;
+        int contactEntered = _permutation.wrap(e + offset);
         int translatedAccordingToPerm = _permutation.invert(contactEntered);
         int positionExited = _permutation.wrap(
-                translatedAccordingToPerm - _currentSetting);
+                translatedAccordingToPerm - offset);
         return positionExited;
     }
 
@@ -85,10 +98,38 @@ class Rotor {
         return false;
     }
 
+    /** Returns true iff I would be at a notch if my setting were POSN.
+     *  By default, rotors have no notches. */
+    boolean notchAt(int posn) {
+        return false;
+    }
+
+    /** Return the number of times I must advance from position POSN to
+     *  reach a notch (0 if POSN is at one), or -1 if I have no notches.
+     *  By default, rotors have no notches. */
+    int notchDistance(int posn) {
+        return -1;
+    }
+
     /** Advance me one position, if possible. By default, does nothing. */
     void advance() {
     }
 
+    /** Return a new rotor with my name, permutation, current setting,
+     *  and ring setting that shares no mutable state with me. */
+    Rotor copy() {
+        Rotor result = duplicate();
+        result._currentSetting = _currentSetting;
+        result._ring = _ring;
+        return result;
+    }
+
+    /** Return a new rotor of my kind, with my name and permutation, in
+     *  its 0 setting with ring setting 0. */
+    Rotor duplicate() {
+        return new Rotor(_name, _permutation);
+    }
+
     @Override
     public String toString() {
         return "Rotor " + _name;
@@ -103,22 +144,6 @@ class Rotor {
     /** My current setting. */
     private int _currentSetting;
 
-    /** Boolean check to see if rotor will rotate
-     *  after each key input and before advancing. */
-    private boolean _willRotate = false;
-
-    /** Return true if rotor set to rotate. */
-    boolean getWillRotate() {
-        return _willRotate;
-    }
-
-    /** Prepare rotor to rotate. */
-    void setToWillRotate() {
-        _willRotate = true;
-    }
-
-    /** Reset rotor to not rotate. */
-    void resetWillRotate() {
-        _willRotate = false;
-    }
+    /** My ring setting. */
+    private int _ring;
 }
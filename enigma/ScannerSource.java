@@ -0,0 +1,37 @@
+package enigma;
+
+import java.util.Scanner;
+
+/** A MessageSource reading from a Scanner.
+ *  @author David Oh
+ */
+class ScannerSource implements MessageSource {
+
+    /** A source reading from INPUT. */
+    ScannerSource(Scanner input) {
+        _input = input;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return _input.hasNext();
+    }
+
+    @Override
+    public boolean hasNextSetting() {
+        return _input.hasNext("\\*");
+    }
+
+    @Override
+    public boolean hasNextLine() {
+        return _input.hasNextLine();
+    }
+
+    @Override
+    public CharSequence nextLine() {
+        return _input.nextLine();
+    }
+
+    /** The Scanner I read from. */
+    private final Scanner _input;
+}
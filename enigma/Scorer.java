@@ -0,0 +1,30 @@
+package enigma;
+
+/** Scores candidate plaintexts given a character at a time, as indices
+ *  into an alphabet, so that a search can rank decryptions without
+ *  building strings.  A scorer holds the state of the text it is
+ *  scoring, so each thread must use its own copy.
+ *  @author David Oh
+ */
+interface Scorer {
+
+    /** Start scoring a new text of N characters. */
+    void start(int n);
+
+    /** Add the character with index C to the text. */
+    void add(int c);
+
+    /** Return the score of the characters added since start(); higher
+     *  is better. */
+    double score();
+
+    /** Return a number that score() cannot exceed once the rest of the
+     *  text given to start() has been added, however it turns out, so
+     *  that a search may abandon a text that cannot beat its worst
+     *  candidate. */
+    double bound();
+
+    /** Return a new scorer of my kind, sharing any read-only tables with
+     *  me but none of my state. */
+    Scorer copy();
+}
@@ -0,0 +1,120 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the Scorer classes.
+ *  @author David Oh
+ */
+public class ScorerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private Alphabet alpha = new Alphabet();
+
+    /** Start SCORER on TEXT, add its characters, and return its score. */
+    private double score(Scorer scorer, String text) {
+        scorer.start(text.length());
+        for (int i = 0; i < text.length(); i += 1) {
+            scorer.add(alpha.toInt(text.charAt(i)));
+        }
+        return scorer.score();
+    }
+
+    /** Check that no prefix of TEXT gives SCORER a bound below the score
+     *  of all of TEXT. */
+    private void checkBounds(Scorer scorer, String text) {
+        double last = score(scorer, text);
+        scorer.start(text.length());
+        for (int i = 0; i < text.length(); i += 1) {
+            assertTrue(text + " at " + i, scorer.bound() >= last);
+            scorer.add(alpha.toInt(text.charAt(i)));
+        }
+        assertEquals(last, scorer.bound(), 1e-9);
+    }
+
+    /** Return a random text of N characters from my alphabet, drawn from
+     *  its first K characters. */
+    private String randomText(Random random, int n, int k) {
+        char[] text = new char[n];
+        for (int i = 0; i < n; i += 1) {
+            text[i] = alpha.toChar(random.nextInt(k));
+        }
+        return new String(text);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testCoincidence() {
+        Scorer scorer = new CoincidenceScorer(alpha.size());
+        Random random = new Random(61);
+        for (int trial = 0; trial < 50; trial += 1) {
+            String text = randomText(random, random.nextInt(40),
+                                     1 + random.nextInt(26));
+            int[] counts = new int[alpha.size()];
+            for (int i = 0; i < text.length(); i += 1) {
+                counts[alpha.toInt(text.charAt(i))] += 1;
+            }
+            assertEquals(text,
+                CoincidenceScorer.indexOfCoincidence(counts, text.length()),
+                score(scorer, text), 1e-12);
+            checkBounds(scorer, text);
+        }
+        assertEquals(1.0, score(scorer.copy(), "AAAA"), 1e-12);
+    }
+
+    @Test
+    public void testNGrams() {
+        float[] table = new float[alpha.size() * alpha.size()];
+        Arrays.fill(table, -5);
+        table[alpha.toInt('T') * alpha.size() + alpha.toInt('H')] = -1;
+        table[alpha.toInt('H') * alpha.size() + alpha.toInt('E')] = -2;
+        Scorer scorer = new NGramScorer(table, 2, alpha.size());
+        assertEquals(-3.0, score(scorer, "THE"), 1e-9);
+        assertEquals(-11.0, score(scorer, "THXE"), 1e-9);
+        assertEquals(0.0, score(scorer, "T"), 1e-9);
+        Random random = new Random(1);
+        for (int trial = 0; trial < 20; trial += 1) {
+            checkBounds(scorer.copy(), randomText(random, 30, 8));
+        }
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        File file = File.createTempFile("ngrams", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("TH 60");
+            out.println("HE 30");
+            out.println("TH 10");
+        }
+        Scorer scorer = NGramScorer.load(file.getPath(), alpha);
+        assertEquals(Math.log10(0.7) + Math.log10(0.3),
+                     score(scorer, "THE"), 1e-6);
+        assertEquals(Math.log10(0.01 / 100), score(scorer, "AB"), 1e-6);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testLoadMixedLengths() throws IOException {
+        File file = File.createTempFile("ngrams", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("TH 60");
+            out.println("THE 30");
+        }
+        NGramScorer.load(file.getPath(), alpha);
+    }
+}
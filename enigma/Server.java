@@ -0,0 +1,333 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running Enigma server.  It reads each configuration file once,
+ *  keeps a pool of machines for each, and converts requests sent by
+ *  clients over TCP connections on the loopback interface.
+ *
+ *  A client may send any number of requests over a connection, and each
+ *  is answered in turn.  A request is a 4-byte big-endian length N
+ *  followed by N bytes: a 4-byte length M, M bytes of UTF-8 naming a
+ *  configuration file relative to the server's configuration directory
+ *  (names that are absolute or contain ".." are refused), and then the
+ *  UTF-8 text of the input, in the same format as Main's input files.
+ *  A response is a 4-byte status (OK or FAILED), a 4-byte length L, and
+ *  L bytes of UTF-8: the output Main would produce for the input, or an
+ *  error message.
+ *  @author David Oh
+ */
+class Server {
+
+    /** Run a server, as specified by ARGS.  ARGS[0] is the port to listen
+     *  on, or 0 to pick a free one; the port chosen is reported on the
+     *  standard error.  Options start with "--" and may appear anywhere:
+     *    --config-dir=DIR    Serve the configurations in DIR (default the
+     *                        current directory).
+     *    --config-cache=DIR  Load configurations through compiled forms
+     *                        kept in DIR, as Main does.
+     *    --max-request=N     Largest request accepted, in bytes.
+     *  Exits with code 1 on errors. */
+    public static void main(String... args) {
+        try {
+            String port = null;
+            String configDir = ".";
+            String cacheDir = null;
+            int maxRequest = DEFAULT_MAX_REQUEST;
+            for (String arg : args) {
+                if (arg.startsWith("--config-dir=")) {
+                    configDir = arg.substring("--config-dir=".length());
+                } else if (arg.startsWith("--config-cache=")) {
+                    cacheDir = arg.substring("--config-cache=".length());
+                } else if (arg.startsWith("--max-request=")) {
+                    maxRequest = Integer.parseInt(
+                        arg.substring("--max-request=".length()));
+                } else if (arg.startsWith("--")) {
+                    throw error("unknown option %s", arg);
+                } else if (port == null) {
+                    port = arg;
+                } else {
+                    throw error("Usage: enigma.Server PORT");
+                }
+            }
+            if (port == null) {
+                throw error("Usage: enigma.Server PORT");
+            }
+            ServerSocket socket =
+                new ServerSocket(Integer.parseInt(port), BACKLOG,
+                                 InetAddress.getLoopbackAddress());
+            System.err.printf("Listening on port %d%n",
+                              socket.getLocalPort());
+            new Server(configDir, cacheDir, maxRequest).serve(socket);
+            return;
+        } catch (NumberFormatException excp) {
+            System.err.printf("Error: bad number: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A server for the configurations in CONFIGDIR that loads them
+     *  through compiled forms in CACHEDIR (or directly, if it is null) and
+     *  accepts requests of at most MAXREQUEST bytes. */
+    Server(String configDir, String cacheDir, int maxRequest) {
+        try {
+            _configDir = Paths.get(configDir).toRealPath();
+        } catch (IOException | InvalidPathException excp) {
+            throw error("no configuration directory %s", configDir);
+        }
+        if (!Files.isDirectory(_configDir)) {
+            throw error("%s is not a directory", configDir);
+        }
+        _cacheDir = cacheDir;
+        _maxRequest = maxRequest;
+    }
+
+    /** Accept connections on SOCKET until it is closed, serving each on a
+     *  thread of its own. */
+    void serve(ServerSocket socket) throws IOException {
+        ExecutorService workers = Executors.newCachedThreadPool();
+        try {
+            while (!socket.isClosed()) {
+                Socket client;
+                try {
+                    client = socket.accept();
+                } catch (IOException excp) {
+                    if (socket.isClosed()) {
+                        break;
+                    }
+                    throw excp;
+                }
+                workers.execute(() -> serveConnection(client));
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /** Answer requests from CLIENT until it closes the connection or
+     *  sends something that is not a valid request. */
+    private void serveConnection(Socket client) {
+        try (Socket s = client) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(s.getOutputStream()));
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException excp) {
+                    return;
+                }
+                if (length < 0 || length > _maxRequest) {
+                    respond(out, FAILED, String.format(
+                        "request of %d bytes is too large", length));
+                    return;
+                }
+                byte[] request = new byte[length];
+                in.readFully(request);
+                out.write(handle(request));
+                out.flush();
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Return the response to the request REQUEST, without its leading
+     *  length. */
+    byte[] handle(byte[] request) {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(response);
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(request);
+            int nameLength = buf.remaining() < 4 ? -1 : buf.getInt();
+            if (nameLength < 0 || nameLength > buf.remaining()) {
+                respond(out, FAILED, "malformed request");
+                return response.toByteArray();
+            }
+            String config = new String(request, buf.position(), nameLength,
+                                       StandardCharsets.UTF_8);
+            int start = buf.position() + nameLength;
+            String input = new String(request, start, request.length - start,
+                                      StandardCharsets.UTF_8);
+            String output;
+            try {
+                output = convert(config, input);
+            } catch (EnigmaException excp) {
+                respond(out, FAILED, excp.getMessage());
+                return response.toByteArray();
+            } catch (RuntimeException excp) {
+                respond(out, FAILED, "malformed input");
+                return response.toByteArray();
+            }
+            respond(out, OK, output);
+        } catch (IOException excp) {
+            throw error("could not build response");
+        }
+        return response.toByteArray();
+    }
+
+    /** Return the output of converting INPUT with a machine configured by
+     *  the configuration file named CONFIG in my configuration
+     *  directory. */
+    String convert(String config, String input) {
+        Path file = configFile(config);
+        Pool pool = _pools.get(file);
+        if (pool == null) {
+            if (_pools.size() >= MAX_POOLS) {
+                _pools.clear();
+            }
+            pool = _pools.computeIfAbsent(file, this::loadPool);
+        }
+        Machine m = pool.borrow();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Main.convertBlocks(m, new ScannerSource(new Scanner(input)),
+                               new ChunkedOutput(bytes, OUTPUT_BUFFER_SIZE,
+                                                 StandardCharsets.UTF_8));
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            pool.release(m);
+        }
+    }
+
+    /** Return the configuration file named NAME, a path relative to my
+     *  configuration directory that may not contain "..".  The file must
+     *  exist and, once symbolic links are followed, be in that
+     *  directory or below it. */
+    Path configFile(String name) {
+        Path file;
+        try {
+            Path path = Paths.get(name);
+            if (name.isEmpty() || path.isAbsolute()) {
+                throw error("bad configuration name %s", name);
+            }
+            for (Path part : path) {
+                if (part.toString().equals("..")) {
+                    throw error("bad configuration name %s", name);
+                }
+            }
+            file = _configDir.resolve(path).toRealPath();
+        } catch (InvalidPathException excp) {
+            throw error("bad configuration name %s", name);
+        } catch (IOException excp) {
+            throw error("unknown configuration %s", name);
+        }
+        if (!file.startsWith(_configDir) || !Files.isRegularFile(file)) {
+            throw error("unknown configuration %s", name);
+        }
+        return file;
+    }
+
+    /** Return a pool of machines configured by the configuration file
+     *  FILE. */
+    private Pool loadPool(Path file) {
+        if (_cacheDir == null) {
+            return new Pool(Main.configure(file.toString()));
+        }
+        return new Pool(CompiledConfig.load(file.toString(), _cacheDir));
+    }
+
+    /** Write a response with status STATUS and text TEXT to OUT. */
+    private static void respond(DataOutputStream out, int status,
+                                String text) throws IOException {
+        byte[] bytes = (text == null ? "" : text)
+            .getBytes(StandardCharsets.UTF_8);
+        out.writeInt(status);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    /** Idle machines with a common configuration.  Every settings block
+     *  inserts rotors, sets them and their rings, and sets the plugboard,
+     *  so a machine left in any state by one request is fit for the
+     *  next. */
+    private static class Pool {
+
+        /** A pool of copies of PROTOTYPE, which has no rotors inserted. */
+        Pool(Machine prototype) {
+            _prototype = prototype;
+        }
+
+        /** Return an idle machine, making a new one if none is idle. */
+        Machine borrow() {
+            Machine m = _idle.poll();
+            return m != null ? m : _prototype.copy();
+        }
+
+        /** Return M to the pool. */
+        void release(Machine m) {
+            _idle.add(m);
+        }
+
+        /** Machine that new machines are copied from. */
+        private final Machine _prototype;
+
+        /** Machines not in use. */
+        private final ConcurrentLinkedQueue<Machine> _idle =
+            new ConcurrentLinkedQueue<Machine>();
+    }
+
+    /** Status of a successful response. */
+    static final int OK = 0;
+
+    /** Status of a response to a request that could not be converted. */
+    static final int FAILED = 1;
+
+    /** Largest request accepted unless set otherwise. */
+    static final int DEFAULT_MAX_REQUEST = 64 << 20;
+
+    /** Number of pending connections the listening socket queues. */
+    private static final int BACKLOG = 128;
+
+    /** Number of configurations whose machine pools are kept before
+     *  they are all dropped. */
+    private static final int MAX_POOLS = 64;
+
+    /** Size of the buffer used to collect a response's output. */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /** Directory of the configurations served, with symbolic links
+     *  resolved. */
+    private final Path _configDir;
+
+    /** Directory of compiled configurations, or null. */
+    private final String _cacheDir;
+
+    /** Largest request accepted, in bytes. */
+    private final int _maxRequest;
+
+    /** Machine pools, by configuration file.  Emptied when it reaches
+     *  MAX_POOLS. */
+    private final ConcurrentHashMap<Path, Pool> _pools =
+        new ConcurrentHashMap<Path, Pool>();
+}
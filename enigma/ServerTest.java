@@ -0,0 +1,121 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** The suite of all JUnit tests for the Server class.
+ *  @author David Oh
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Configuration with the naval rotors I, III, IV, Beta and B. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n5 3\n"
+        + "I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + "III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + "IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + "Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + "B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) "
+        + "(RX) (SZ) (TV)\n";
+
+    /** Return a new temporary directory containing CONFIG in the file
+     *  named by CONFIG_NAME. */
+    private Path configDir() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        dir.toFile().deleteOnExit();
+        Path file = dir.resolve(CONFIG_NAME);
+        file.toFile().deleteOnExit();
+        Files.write(file, CONFIG.getBytes(StandardCharsets.UTF_8));
+        return dir;
+    }
+
+    /** Return a server for the configurations in DIR. */
+    private Server server(Path dir) {
+        return new Server(dir.toString(), null, Server.DEFAULT_MAX_REQUEST);
+    }
+
+    /** Name of the file holding CONFIG. */
+    private static final String CONFIG_NAME = "naval.conf";
+
+    /** Return a request to convert INPUT with the configuration file
+     *  named CONFIG, without its leading length. */
+    private byte[] request(String config, String input) {
+        byte[] name = config.getBytes(StandardCharsets.UTF_8);
+        byte[] text = input.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + name.length + text.length)
+            .putInt(name.length).put(name).put(text).array();
+    }
+
+    /** Assert that RESPONSE has status STATUS and text TEXT. */
+    private void checkResponse(int status, String text, byte[] response) {
+        ByteBuffer buf = ByteBuffer.wrap(response);
+        assertEquals(status, buf.getInt());
+        assertEquals(buf.remaining() - 4, buf.getInt());
+        assertEquals(text, new String(response, 8, response.length - 8,
+                                      StandardCharsets.UTF_8));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testConvert() throws IOException {
+        Server server = server(configDir());
+        String config = CONFIG_NAME;
+        String input = "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+            + "FROM his shoulder Hiawatha\n".toUpperCase();
+        for (int i = 0; i < 3; i += 1) {
+            checkResponse(Server.OK, "QVPQS OKOIL PUBKJ ZPISF XDW",
+                          server.handle(request(config, input)));
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        Server server = server(configDir());
+        String config = CONFIG_NAME;
+        checkResponse(Server.FAILED,
+                      "Message contains characters not found in alphabet.",
+                      server.handle(request(config,
+                                            "* B Beta III IV I AXLE\nab")));
+        checkResponse(Server.FAILED, "malformed request",
+                      server.handle(new byte[] {0, 0, 0, 9}));
+    }
+
+    @Test
+    public void testConfigNames() throws IOException {
+        Path dir = configDir();
+        Path sub = Files.createDirectory(dir.resolve("sub"));
+        sub.toFile().deleteOnExit();
+        Server server = server(sub);
+        String input = "* B Beta III IV I AXLE\nHIAWATHA\n";
+        String outside = dir.resolve(CONFIG_NAME).toString();
+        checkResponse(Server.FAILED, "bad configuration name " + outside,
+                      server.handle(request(outside, input)));
+        checkResponse(Server.FAILED, "bad configuration name ../naval.conf",
+                      server.handle(request("../naval.conf", input)));
+        checkResponse(Server.FAILED, "bad configuration name a/../../x",
+                      server.handle(request("a/../../x", input)));
+        checkResponse(Server.FAILED, "bad configuration name ",
+                      server.handle(request("", input)));
+        checkResponse(Server.FAILED, "unknown configuration missing.conf",
+                      server.handle(request("missing.conf", input)));
+        Files.copy(dir.resolve(CONFIG_NAME), sub.resolve(CONFIG_NAME));
+        sub.resolve(CONFIG_NAME).toFile().deleteOnExit();
+        checkResponse(Server.OK, "FXMUY LLB",
+                      server.handle(request(CONFIG_NAME, input)));
+    }
+}
@@ -0,0 +1,129 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** An enumeration of rotor settings of a machine in odometer order: the
+ *  rightmost rotor changes fastest and the leftmost (not counting the
+ *  reflector) slowest.  Settings are numbered from 0, with every rotor
+ *  at 0, to count(M) - 1.  Moving to the next setting sets only the
+ *  rotors whose settings differ from the machine's current ones, so as
+ *  long as only the rightmost rotor changes the machine keeps its rotor
+ *  stack table.
+ *  @author David Oh
+ */
+class SettingEnumerator {
+
+    /** An enumeration of every setting of MACHINE, whose rotors must
+     *  already be inserted. */
+    SettingEnumerator(Machine machine) {
+        this(machine, 0, count(machine));
+    }
+
+    /** An enumeration of the COUNT settings of MACHINE starting with
+     *  setting number FIRST.  MACHINE's rotors must already be inserted. */
+    SettingEnumerator(Machine machine, long first, long count) {
+        long total = count(machine);
+        if (first < 0 || count < 0 || first > total - count) {
+            throw error("settings %d .. %d out of range", first,
+                        first + count - 1);
+        }
+        _machine = machine;
+        _size = machine.alphabet().size();
+        _setting = new int[machine.numRotors() - 1];
+        _next = first;
+        _end = first + count;
+        long rest = first;
+        for (int i = _setting.length - 1; i >= 0; i -= 1) {
+            _setting[i] = (int) (rest % _size);
+            rest /= _size;
+        }
+    }
+
+    /** Return the number of rotor settings of M. */
+    static long count(Machine m) {
+        long size = m.alphabet().size();
+        long total = 1;
+        for (int i = 1; i < m.numRotors(); i += 1) {
+            if (total > Long.MAX_VALUE / size) {
+                throw error("too many rotor settings to enumerate");
+            }
+            total *= size;
+        }
+        return total;
+    }
+
+    /** Returns true iff there are settings left. */
+    boolean hasNext() {
+        return _next < _end;
+    }
+
+    /** Set my machine's rotors to the next setting and return it as
+     *  indices into the alphabet, leftmost first.  The array returned is
+     *  reused by later calls and must not be modified.  Calling this
+     *  again also undoes any stepping done by the machine since. */
+    int[] next() {
+        if (!hasNext()) {
+            throw error("no more rotor settings");
+        }
+        if (_started) {
+            advance();
+        }
+        _started = true;
+        _next += 1;
+        _machine.setRotors(_setting);
+        return _setting;
+    }
+
+    /** Return the number of the setting most recently returned by
+     *  next(). */
+    long index() {
+        return _next - 1;
+    }
+
+    /** Copy up to BATCH.length of the next settings into the rows of
+     *  BATCH, each of which must have numRotors()-1 entries, without
+     *  changing my machine.  Returns the number of rows filled, which is
+     *  less than BATCH.length only when the enumeration runs out. */
+    int nextBatch(int[][] batch) {
+        int n = 0;
+        while (n < batch.length && hasNext()) {
+            if (_started) {
+                advance();
+            }
+            _started = true;
+            _next += 1;
+            System.arraycopy(_setting, 0, batch[n], 0, _setting.length);
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Advance _setting by one in odometer order. */
+    private void advance() {
+        for (int i = _setting.length - 1; i >= 0; i -= 1) {
+            _setting[i] += 1;
+            if (_setting[i] < _size) {
+                return;
+            }
+            _setting[i] = 0;
+        }
+    }
+
+    /** Machine whose rotors I set. */
+    private final Machine _machine;
+
+    /** Size of the machine's alphabet. */
+    private final int _size;
+
+    /** Current setting, as alphabet indices, leftmost first. */
+    private final int[] _setting;
+
+    /** Number of the next setting to return. */
+    private long _next;
+
+    /** Number of the first setting past the end of my range. */
+    private final long _end;
+
+    /** True once _setting has been returned at least once. */
+    private boolean _started;
+}
@@ -0,0 +1,94 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+/** The suite of all JUnit tests for the SettingEnumerator class.
+ *  @author David Oh
+ */
+public class SettingEnumeratorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private Alphabet alpha = new Alphabet("ABC");
+
+    /** Return a four-slot machine on the alphabet ABC. */
+    private Machine smallMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new Reflector("R", new Permutation("(AB) (C)", alpha)));
+        rotors.add(new FixedRotor("F", new Permutation("(ABC)", alpha)));
+        rotors.add(new MovingRotor("M1", new Permutation("(AC)", alpha),
+                                   "A"));
+        rotors.add(new MovingRotor("M2", new Permutation("(BC)", alpha),
+                                   "B"));
+        Machine m = new Machine(alpha, 4, 2, rotors);
+        m.insertRotors(new String[] {"R", "F", "M1", "M2"});
+        m.setPlugboard(new Permutation("", alpha));
+        return m;
+    }
+
+    /** Return SETTING as a string of characters of my alphabet. */
+    private String letters(int[] setting) {
+        StringBuilder result = new StringBuilder();
+        for (int k : setting) {
+            result.append(alpha.toChar(k));
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testOdometerOrder() {
+        Machine m = smallMachine();
+        SettingEnumerator settings = new SettingEnumerator(m);
+        assertEquals(27, SettingEnumerator.count(m));
+        assertEquals("AAA", letters(settings.next()));
+        assertEquals("AAB", letters(settings.next()));
+        assertEquals("AAC", letters(settings.next()));
+        assertEquals("ABA", letters(settings.next()));
+        int n = 4;
+        String last = null;
+        while (settings.hasNext()) {
+            last = letters(settings.next());
+            n += 1;
+        }
+        assertEquals(27, n);
+        assertEquals("CCC", last);
+        assertEquals(26, settings.index());
+    }
+
+    @Test
+    public void testNextSetsMachine() {
+        Machine m = smallMachine();
+        Machine fresh = smallMachine();
+        SettingEnumerator settings = new SettingEnumerator(m, 5, 10);
+        while (settings.hasNext()) {
+            String setting = letters(settings.next());
+            fresh.setRotors(setting);
+            assertEquals(fresh.convert("ABCCBAABC"), m.convert("ABCCBAABC"));
+        }
+    }
+
+    @Test
+    public void testBatches() {
+        SettingEnumerator settings =
+            new SettingEnumerator(smallMachine(), 7, 5);
+        int[][] batch = new int[3][3];
+        assertEquals(3, settings.nextBatch(batch));
+        assertEquals("ACB", letters(batch[0]));
+        assertEquals("ACC", letters(batch[1]));
+        assertEquals("BAA", letters(batch[2]));
+        assertEquals(2, settings.nextBatch(batch));
+        assertEquals("BAC", letters(batch[1]));
+        assertEquals(0, settings.nextBatch(batch));
+    }
+}
@@ -0,0 +1,236 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+
+import static enigma.EnigmaException.*;
+
+/** A MessageSource reading from a Reader through a fixed-size buffer,
+ *  whose message lines may be read in pieces with nextLinePiece, so that
+ *  lines of any length can be converted in bounded memory.  Looking ahead
+ *  for the next token consumes the whitespace before it, keeping only
+ *  what nextLine would reveal of it: each line's whitespace, with runs
+ *  of spaces shortened.  Consecutive lines with the same whitespace are
+ *  counted rather than stored, so that any number of blank lines take
+ *  the same space.  Lines end as they do for a Scanner.
+ *  @author David Oh
+ */
+class StreamSource implements MessageSource {
+
+    /** A source reading from INPUT through a buffer of the default
+     *  size. */
+    StreamSource(Reader input) {
+        this(input, BUFFER_SIZE);
+    }
+
+    /** A source reading from INPUT through a buffer of SIZE >= 2
+     *  characters. */
+    StreamSource(Reader input, int size) {
+        _input = input;
+        _buf = new char[size];
+    }
+
+    @Override
+    public boolean hasNext() {
+        return skipWhitespace();
+    }
+
+    @Override
+    public boolean hasNextSetting() {
+        return skipWhitespace() && _buf[_start] == '*'
+            && (!fill(2) || Character.isWhitespace(_buf[_start + 1]));
+    }
+
+    @Override
+    public boolean hasNextLine() {
+        return !_pendingLines.isEmpty() || _pending.length() > 0 || fill(1);
+    }
+
+    @Override
+    public CharSequence nextLine() {
+        StringBuilder line = new StringBuilder();
+        CharSequence piece = nextLinePiece();
+        while (piece != null) {
+            line.append(piece);
+            piece = nextLinePiece();
+        }
+        return line;
+    }
+
+    /** Returns the next piece of the current line, or null, after moving
+     *  past its terminator, if the rest of the line is empty.  Pieces
+     *  are never empty, and are no longer than my buffer.  The result may
+     *  share storage with this source and is only valid until the next
+     *  call on it. */
+    CharSequence nextLinePiece() {
+        PendingLines lines = _pendingLines.peekFirst();
+        if (lines != null) {
+            if (_pendingStarted || lines.text.isEmpty()) {
+                _pendingStarted = false;
+                lines.count -= 1;
+                if (lines.count == 0) {
+                    _pendingLines.removeFirst();
+                }
+                return null;
+            }
+            _pendingStarted = true;
+            return lines.text;
+        }
+        if (_pending.length() > 0) {
+            String piece = _pending.toString();
+            _pending.setLength(0);
+            return piece;
+        }
+        if (!fill(1)) {
+            return null;
+        }
+        if (isLineEnd(_buf[_start])) {
+            skipLineEnd();
+            return null;
+        }
+        int i = _start;
+        while (i < _end && !isLineEnd(_buf[i])) {
+            i += 1;
+        }
+        CharBuffer piece = CharBuffer.wrap(_buf, _start, i - _start);
+        _start = i;
+        return piece;
+    }
+
+    /** Move past whitespace into _pending and _pendingLines.  Returns
+     *  true iff a non-whitespace character follows it. */
+    private boolean skipWhitespace() {
+        while (fill(1)) {
+            char c = _buf[_start];
+            if (!Character.isWhitespace(c)) {
+                return true;
+            }
+            int last = _pending.length() - 1;
+            if (isLineEnd(c)) {
+                skipLineEnd();
+                endPendingLine();
+            } else if (isSpace(c)) {
+                _start += 1;
+                if (last < 0 || _pending.charAt(last) != ' ') {
+                    _pending.append(' ');
+                }
+            } else {
+                _start += 1;
+                _pending.append(c);
+            }
+        }
+        return false;
+    }
+
+    /** Move the whitespace in _pending, which a line break has ended, to
+     *  the end of _pendingLines. */
+    private void endPendingLine() {
+        String text = _pending.toString();
+        _pending.setLength(0);
+        PendingLines last = _pendingLines.peekLast();
+        if (last != null && last.text.equals(text)) {
+            last.count += 1;
+        } else {
+            _pendingLines.addLast(new PendingLines(text));
+        }
+    }
+
+    /** Move past the line terminator at the start of my buffer. */
+    private void skipLineEnd() {
+        char c = _buf[_start];
+        _start += 1;
+        if (c == '\r' && fill(1) && _buf[_start] == '\n') {
+            _start += 1;
+        }
+    }
+
+    /** Make sure at least N characters, no more than my buffer holds,
+     *  are buffered if there are that many left.  Returns true iff there
+     *  are. */
+    private boolean fill(int n) {
+        if (_end - _start >= n) {
+            return true;
+        }
+        if (_start > 0) {
+            System.arraycopy(_buf, _start, _buf, 0, _end - _start);
+            _end -= _start;
+            _start = 0;
+        }
+        try {
+            while (_end < n && !_eof) {
+                int count = _input.read(_buf, _end, _buf.length - _end);
+                if (count < 0) {
+                    _eof = true;
+                } else {
+                    _end += count;
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not read input");
+        }
+        return _end >= n;
+    }
+
+    /** Returns true iff C terminates a line for a Scanner. */
+    private static boolean isLineEnd(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029'
+            || c == '\u0085';
+    }
+
+    /** Returns true iff C is whitespace that Main leaves out of message
+     *  lines, other than a line terminator, so that a run of such
+     *  characters may be shortened to one. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\u000b' || c == '\f';
+    }
+
+    /** Default size of my buffer. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** Source of my characters. */
+    private final Reader _input;
+
+    /** Buffered characters, of which those from _start to _end are
+     *  unread. */
+    private final char[] _buf;
+
+    /** Index of the first unread character of _buf. */
+    private int _start;
+
+    /** Index past the last unread character of _buf. */
+    private int _end;
+
+    /** True once _input is exhausted. */
+    private boolean _eof;
+
+    /** Lines of whitespace read ahead of the rest of _buf, oldest
+     *  first. */
+    private final ArrayDeque<PendingLines> _pendingLines =
+        new ArrayDeque<PendingLines>();
+
+    /** True iff nextLinePiece has returned the whitespace of the first
+     *  line of _pendingLines but not yet moved past its line break. */
+    private boolean _pendingStarted;
+
+    /** Whitespace read ahead of the rest of _buf after the last line of
+     *  _pendingLines, with runs of spaces shortened. */
+    private final StringBuilder _pending = new StringBuilder();
+
+    /** A run of consecutive lines that hold the same whitespace. */
+    private static class PendingLines {
+
+        /** A run of one line whose whitespace is TEXT. */
+        PendingLines(String text) {
+            this.text = text;
+            this.count = 1;
+        }
+
+        /** Whitespace of each line, with runs of spaces shortened. */
+        private final String text;
+
+        /** Number of lines in the run. */
+        private long count;
+    }
+}
@@ -0,0 +1,102 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.Scanner;
+
+/** The suite of all JUnit tests for the StreamSource class.
+ *  @author David Oh
+ */
+public class StreamSourceTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Inputs whose reading is checked against a Scanner's. */
+    private static final String[] INPUTS = {
+        "* B I II\nHELLO WORLD\n\nABC\n",
+        "* B I II\r\nHELLO\r\n\r\n   \r\n* B II I\r\nX",
+        "\n\n  \t\n* B I\nONE TWO\n  * B I\n*X\n\n",
+        "*\nA\u2028B\u0085C\r\rD   \n   \t  \n",
+        "\n\n\n  \n \t \n\t\n\n\n* B I\n\n\n \n \nX\n\n",
+        "MESSAGE WITHOUT A SETTINGS LINE",
+        "",
+        "   ",
+    };
+
+    /** Return a record of the results of reading all of SOURCE with the
+     *  operations Main uses, alternating between looking ahead and
+     *  reading lines.  Runs of spaces in lines, which Main leaves out
+     *  of messages, are shortened to one. */
+    private String transcript(MessageSource source) {
+        StringBuilder result = new StringBuilder();
+        while (source.hasNextLine()) {
+            result.append(source.hasNext() ? 'n' : '-')
+                .append(source.hasNextSetting() ? 's' : '-')
+                .append(source.hasNextLine() ? 'l' : '-');
+            if (!source.hasNextLine()) {
+                break;
+            }
+            String line = source.nextLine().toString();
+            result.append('[').append(line.replaceAll("[ \\t\\f\\x0B]+", " "))
+                .append(']');
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMatchesScanner() {
+        for (String input : INPUTS) {
+            String expected =
+                transcript(new ScannerSource(new Scanner(input)));
+            for (int size = 2; size < 6; size += 1) {
+                assertEquals(input, expected, transcript(
+                    new StreamSource(new StringReader(input), size)));
+            }
+            assertEquals(input, expected, transcript(
+                new StreamSource(new StringReader(input))));
+        }
+    }
+
+    @Test
+    public void testManyBlankLines() {
+        int n = 1 << 20;
+        StreamSource source = new StreamSource(
+            new StringReader("\n".repeat(n) + "* B I\n"), 16);
+        assertTrue(source.hasNextSetting());
+        for (int i = 0; i < n; i += 1) {
+            assertNull(source.nextLinePiece());
+        }
+        assertTrue(source.hasNextSetting());
+        assertEquals("* B I", source.nextLine().toString());
+        assertFalse(source.hasNextLine());
+    }
+
+    @Test
+    public void testPieces() {
+        StreamSource source =
+            new StreamSource(new StringReader("  ABCDEFG\n\nH"), 3);
+        assertTrue(source.hasNext());
+        StringBuilder line = new StringBuilder();
+        CharSequence piece = source.nextLinePiece();
+        while (piece != null) {
+            assertTrue(piece.length() > 0 && piece.length() <= 3);
+            line.append(piece);
+            piece = source.nextLinePiece();
+        }
+        assertEquals(" ABCDEFG", line.toString());
+        assertNull(source.nextLinePiece());
+        assertEquals("H", source.nextLinePiece().toString());
+        assertNull(source.nextLinePiece());
+        assertFalse(source.hasNextLine());
+    }
+}
@@ -0,0 +1,288 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** Converts batches of messages in lockstep with one vector lane per
+ *  message.  The rightmost rotor tables of the cursors, which fold in
+ *  their plugboards, are flattened into one array, each distinct table
+ *  once, and the rotor stack tables of a group of cursors are copied
+ *  into another, one block of entries per lane, so that each of the
+ *  three table lookups of a keypress is a single gather over all the
+ *  lanes.  The flattened tables are kept from one group to the next, so
+ *  a group only flattens the tables of plugboards not seen before.  The
+ *  rightmost rotors step in the vector too; each lane counts down the
+ *  keypresses until one may move another rotor, and only lanes whose
+ *  count runs out step in scalar code.  This class needs the incubating
+ *  jdk.incubator.vector module, so Machine refers to it only when that
+ *  module is present.
+ *  @author David Oh
+ */
+final class VectorLanes {
+
+    /** Convert messages FROM .. TO-1 of TEXT, whose characters are given
+     *  as alphabet indices and are replaced by their conversions, where
+     *  message K is converted by CURSORS[K], exactly as
+     *  CURSORS[K].convert would convert them one at a time. */
+    static void convert(char[][] text, MachineCursor[] cursors,
+                        int from, int to) {
+        VectorLanes lanes = new VectorLanes(text, cursors, from);
+        for (int group = from; group < to; group += LANES) {
+            lanes.load(group, Math.min(to, group + LANES));
+            lanes.convert();
+        }
+    }
+
+    /** A converter of the messages of TEXT with CURSORS, as for convert,
+     *  all of whose cursors share the spec of CURSORS[FROM]. */
+    private VectorLanes(char[][] text, MachineCursor[] cursors, int from) {
+        _text = text;
+        _cursors = cursors;
+        _spec = cursors[from].spec();
+        _size = _spec.alphabet().size();
+        _forward = new int[_size * _size];
+        _backward = new int[_forward.length];
+        _inner = new int[LANES * _size];
+        _posns = new int[LANES][_spec.numRotors()];
+        _stepped = new int[LANES];
+        _base = new int[LANES];
+        _rows = new int[LANES];
+        _quiet = new int[LANES];
+        _index = new int[LANES];
+        int[] innerBase = new int[LANES];
+        for (int lane = 0; lane < LANES; lane += 1) {
+            innerBase[lane] = lane * _size;
+        }
+        _innerBase = IntVector.fromArray(SPECIES, innerBase, 0);
+    }
+
+    /** Set up my lanes to convert messages FROM .. TO-1 of _text, of
+     *  which there are at most LANES.  Lanes left over convert nothing. */
+    private void load(int from, int to) {
+        _from = from;
+        _lanes = to - from;
+        _longest = 0;
+        if (_offsets.size() + _lanes > MAX_TABLES) {
+            _offsets.clear();
+            _filled = 0;
+        }
+        for (int lane = 0; lane < LANES; lane += 1) {
+            if (lane >= _lanes) {
+                _base[lane] = _rows[lane] = 0;
+                _quiet[lane] = Integer.MAX_VALUE;
+                continue;
+            }
+            MachineCursor cursor = _cursors[from + lane];
+            int[] posns = _posns[lane];
+            for (int i = 0; i < posns.length; i += 1) {
+                posns[i] = cursor.position(i);
+            }
+            _stepped[lane] = -1;
+            System.arraycopy(_spec.innerTable(posns), 0, _inner,
+                             lane * _size, _size);
+            _base[lane] = offset(cursor);
+            _rows[lane] = _base[lane] + posns[posns.length - 1] * _size;
+            _quiet[lane] = _spec.quietKeypresses(posns);
+            _longest = Math.max(_longest, _text[from + lane].length);
+        }
+        if (_chars.length < _longest * LANES) {
+            _chars = new int[_longest * LANES];
+        }
+    }
+
+    /** Return the offset in _forward and _backward of the rightmost rotor
+     *  tables of CURSOR, flattening them there if they are not already. */
+    private int offset(MachineCursor cursor) {
+        Integer offset = _offsets.get(cursor.forward());
+        if (offset == null) {
+            int square = _size * _size;
+            if (_filled + square > _forward.length) {
+                _forward = Arrays.copyOf(_forward, 2 * _forward.length);
+                _backward = Arrays.copyOf(_backward, _forward.length);
+            }
+            offset = _filled;
+            flatten(cursor.forward(), _forward, offset);
+            flatten(cursor.backward(), _backward, offset);
+            _filled += square;
+            _offsets.put(cursor.forward(), offset);
+        }
+        return offset;
+    }
+
+    /** Convert the messages loaded into my lanes. */
+    private void convert() {
+        int[] chars = _chars;
+        for (int lane = 0; lane < _lanes; lane += 1) {
+            char[] msg = _text[_from + lane];
+            for (int j = 0; j < msg.length; j += 1) {
+                chars[j * LANES + lane] = msg[j];
+            }
+        }
+        int[] forward = _forward;
+        int[] backward = _backward;
+        IntVector innerBase = _innerBase;
+        IntVector base = IntVector.fromArray(SPECIES, _base, 0);
+        IntVector rowEnd = base.add(_size * _size);
+        IntVector rows = IntVector.fromArray(SPECIES, _rows, 0);
+        IntVector quiet = IntVector.fromArray(SPECIES, _quiet, 0);
+        for (int j = 0; j < _longest; j += 1) {
+            IntVector next = rows.add(_size);
+            next = next.sub(_size * _size,
+                            next.compare(VectorOperators.GE, rowEnd));
+            quiet = quiet.sub(1);
+            VectorMask<Integer> carrying = quiet.lt(0);
+            if (carrying.anyTrue()) {
+                rows.intoArray(_rows, 0);
+                quiet.intoArray(_quiet, 0);
+                for (int lane = 0; lane < _lanes; lane += 1) {
+                    if (_quiet[lane] < 0) {
+                        step(lane, j);
+                    }
+                }
+                next = next.blend(IntVector.fromArray(SPECIES, _rows, 0),
+                                  carrying);
+                quiet = IntVector.fromArray(SPECIES, _quiet, 0);
+            }
+            rows = next;
+            IntVector c = IntVector.fromArray(SPECIES, chars, j * LANES);
+            c.add(rows).intoArray(_index, 0);
+            c = IntVector.fromArray(SPECIES, forward, 0, _index, 0);
+            c.add(innerBase).intoArray(_index, 0);
+            c = IntVector.fromArray(SPECIES, _inner, 0, _index, 0);
+            c.add(rows).intoArray(_index, 0);
+            c = IntVector.fromArray(SPECIES, backward, 0, _index, 0);
+            c.intoArray(chars, j * LANES);
+        }
+        for (int lane = 0; lane < _lanes; lane += 1) {
+            char[] msg = _text[_from + lane];
+            for (int j = 0; j < msg.length; j += 1) {
+                msg[j] = (char) chars[j * LANES + lane];
+            }
+            int[] posns = _posns[lane];
+            int last = posns.length - 1;
+            posns[last] = (int) ((posns[last] + (long) msg.length - 1
+                                  - _stepped[lane]) % _size);
+            _cursors[_from + lane].setRotors(
+                Arrays.copyOfRange(posns, 1, posns.length));
+        }
+    }
+
+    /** Advance all the rotors of lane LANE, whose rightmost rotor is at
+     *  the row given by its entry of _rows, by the keypress that converts
+     *  character J of its message, updating its entries of _rows,
+     *  _quiet, and _inner.  Lanes whose message is shorter are left
+     *  with nothing more to do. */
+    private void step(int lane, int j) {
+        if (j >= _text[_from + lane].length) {
+            _quiet[lane] = Integer.MAX_VALUE;
+            return;
+        }
+        int[] posns = _posns[lane];
+        int last = posns.length - 1;
+        posns[last] = (_rows[lane] - _base[lane]) / _size;
+        if (_spec.step(posns)) {
+            System.arraycopy(_spec.innerTable(posns), 0, _inner,
+                             lane * _size, _size);
+        }
+        _rows[lane] = _base[lane] + posns[last] * _size;
+        _stepped[lane] = j;
+        _quiet[lane] = _spec.quietKeypresses(posns);
+    }
+
+    /** Copy the rows of TABLE one after another into FLAT, starting at
+     *  OFFSET. */
+    private static void flatten(int[][] table, int[] flat, int offset) {
+        for (int[] row : table) {
+            System.arraycopy(row, 0, flat, offset, row.length);
+            offset += row.length;
+        }
+    }
+
+    /** Shape of the vectors used: the widest the platform supports. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Number of messages converted together. */
+    private static final int LANES = SPECIES.length();
+
+    /** Number of flattened tables kept in _forward and _backward before
+     *  they are all dropped. */
+    private static final int MAX_TABLES = 4 * LANES;
+
+    /** The messages, of which I convert _lanes starting at _from. */
+    private final char[][] _text;
+
+    /** The cursors converting _text, which are left where they would be
+     *  had they converted it. */
+    private final MachineCursor[] _cursors;
+
+    /** Index in _text of the message in my first lane. */
+    private int _from;
+
+    /** Number of lanes holding messages. */
+    private int _lanes;
+
+    /** Length of the longest message in my lanes. */
+    private int _longest;
+
+    /** Spec shared by my cursors. */
+    private final MachineSpec _spec;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Plugboard-then-rightmost-rotor tables of my cursors, flattened and
+     *  placed one after another. */
+    private int[] _forward;
+
+    /** Rightmost-rotor-inverse-then-plugboard tables of my cursors,
+     *  flattened and placed like _forward. */
+    private int[] _backward;
+
+    /** Offset in _forward and _backward of each table flattened there,
+     *  keyed by its unflattened forward table.  Emptied when it would
+     *  hold more than MAX_TABLES. */
+    private final IdentityHashMap<int[][], Integer> _offsets =
+        new IdentityHashMap<int[][], Integer>();
+
+    /** Number of entries of _forward and _backward in use. */
+    private int _filled;
+
+    /** Characters of the messages in my lanes, one from each lane in
+     *  turn. */
+    private int[] _chars = new int[0];
+
+    /** Rotor stack table of each lane, placed one after another. */
+    private final int[] _inner;
+
+    /** Offset in _inner of each lane's table. */
+    private final IntVector _innerBase;
+
+    /** Rotor positions of each lane, reflector first.  The rightmost is
+     *  brought up to date from _rows only when the lane steps in scalar
+     *  code and when its message is done. */
+    private final int[][] _posns;
+
+    /** Index of the character of each message at which its lane last
+     *  stepped in scalar code, or -1 if it has not. */
+    private final int[] _stepped;
+
+    /** Offset in _forward and _backward of each lane's tables. */
+    private final int[] _base;
+
+    /** Offset in _forward and _backward of the row for the rightmost
+     *  rotor position of each lane. */
+    private final int[] _rows;
+
+    /** Number of keypresses each lane may still make moving only its
+     *  rightmost rotor. */
+    private final int[] _quiet;
+
+    /** Indices of the table entries to gather. */
+    private final int[] _index;
+}
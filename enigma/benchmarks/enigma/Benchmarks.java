@@ -0,0 +1,729 @@
+package enigma;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** Benchmarks for the hot paths of the Enigma simulator.  Each benchmark
+ *  is run for a number of warm-up iterations, whose results are thrown
+ *  away, and then for a number of measured iterations, each of which
+ *  repeats the benchmark's operation for roughly a fixed amount of time.
+ *  Results are reported as the mean time per operation and its standard
+ *  deviation over the measured iterations.  Configurations and inputs
+ *  are generated from a fixed seed, so runs are comparable.
+ *  @author David Oh
+ */
+public final class Benchmarks {
+
+    /** Run the benchmarks, as specified by ARGS.  Options:
+     *    --filter=TEXT     Run only benchmarks whose names contain TEXT.
+     *    --warmup=N        Warm-up iterations per benchmark (default 3).
+     *    --iterations=N    Measured iterations per benchmark (default 5).
+     *    --time=MS         Target length of an iteration (default 500).
+     *    --quick           Skip the 100 MB benchmarks.
+     *    --save=FILE       Write the results to FILE.
+     *    --compare=FILE    Compare the results with those saved in FILE
+     *                      and exit with code 1 if any benchmark is slower
+     *                      by more than the tolerance.
+     *    --tolerance=PCT   Slowdown allowed by --compare (default 10).
+     *  Exits with code 1 on errors. */
+    public static void main(String... args) {
+        try {
+            Benchmarks bench = new Benchmarks(args);
+            bench.runAll();
+            if (!bench.finish()) {
+                System.exit(1);
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Benchmarks configured by the options ARGS (see comment on main). */
+    Benchmarks(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--quick")) {
+                _quick = true;
+            } else if (arg.startsWith("--filter=")) {
+                _filter = value(arg);
+            } else if (arg.startsWith("--warmup=")) {
+                _warmup = number(arg);
+            } else if (arg.startsWith("--iterations=")) {
+                _iterations = Math.max(1, number(arg));
+            } else if (arg.startsWith("--time=")) {
+                _iterationNanos = number(arg) * 1_000_000L;
+            } else if (arg.startsWith("--save=")) {
+                _save = value(arg);
+            } else if (arg.startsWith("--compare=")) {
+                _compare = value(arg);
+            } else if (arg.startsWith("--tolerance=")) {
+                _tolerance = number(arg);
+            } else {
+                throw error("unknown option %s", arg);
+            }
+        }
+    }
+
+    /** Run every selected benchmark. */
+    void runAll() {
+        for (int size : ALPHABET_SIZES) {
+            Machine m = machine(NAVAL_ROTORS, size);
+            Alphabet alpha = m.alphabet();
+            int[] indices = indices(alpha.size());
+            char[] chars = new char[indices.length];
+            for (int i = 0; i < chars.length; i += 1) {
+                chars[i] = alpha.toChar(indices[i]);
+            }
+            Rotor rotor = movingRotor(m);
+            Permutation perm = rotor.permutation();
+            String suffix = "/" + size;
+
+            run("Alphabet.toInt" + suffix, reps -> {
+                long sum = 0;
+                for (long r = 0; r < reps; r += 1) {
+                    sum += alpha.toInt(chars[(int) r & INDEX_MASK]);
+                }
+                return sum;
+            });
+            run("Permutation.permute" + suffix, reps -> {
+                long sum = 0;
+                for (long r = 0; r < reps; r += 1) {
+                    sum += perm.permute(indices[(int) r & INDEX_MASK]);
+                }
+                return sum;
+            });
+            run("Permutation.invert" + suffix, reps -> {
+                long sum = 0;
+                for (long r = 0; r < reps; r += 1) {
+                    sum += perm.invert(indices[(int) r & INDEX_MASK]);
+                }
+                return sum;
+            });
+            run("Rotor.convertForward" + suffix, reps -> {
+                long sum = 0;
+                for (long r = 0; r < reps; r += 1) {
+                    rotor.set(indices[(int) (r >>> 3) & INDEX_MASK]);
+                    sum += rotor.convertForward(
+                        indices[(int) r & INDEX_MASK]);
+                }
+                return sum;
+            });
+            run("Rotor.convertBackward" + suffix, reps -> {
+                long sum = 0;
+                for (long r = 0; r < reps; r += 1) {
+                    rotor.set(indices[(int) (r >>> 3) & INDEX_MASK]);
+                    sum += rotor.convertBackward(
+                        indices[(int) r & INDEX_MASK]);
+                }
+                return sum;
+            });
+            run("Machine.convert(int)" + suffix, reps -> {
+                long sum = 0;
+                for (long r = 0; r < reps; r += 1) {
+                    sum += m.convert(indices[(int) r & INDEX_MASK]);
+                }
+                return sum;
+            });
+        }
+
+        Machine naval = machine(NAVAL_ROTORS, ALPHABET_SIZES[0]);
+        for (int length : MESSAGE_LENGTHS) {
+            if (_quick && length > QUICK_LIMIT) {
+                continue;
+            }
+            String name = "Machine.convert(String)/" + sizeName(length);
+            if (!selected(name)) {
+                continue;
+            }
+            String msg = message(naval.alphabet(), length);
+            run(name, reps -> {
+                long sum = 0;
+                for (long r = 0; r < reps; r += 1) {
+                    sum += naval.convert(msg).length();
+                }
+                return sum;
+            });
+        }
+
+        for (boolean vector : new boolean[] { false, true }) {
+            if (vector && !Machine.VECTOR_LANES) {
+                continue;
+            }
+            runBatch(naval, "", BATCH_MESSAGES, BATCH_MESSAGE_LENGTH,
+                     BATCH_MESSAGES, vector);
+            runBatch(naval, "short/", SHORT_BATCH_MESSAGES,
+                     SHORT_MESSAGE_LENGTH, SHORT_BATCH_PLUGBOARDS, vector);
+        }
+
+        for (int rotors : MACHINE_ROTORS) {
+            for (int size : ALPHABET_SIZES) {
+                String name = "Main.process/" + rotors + "x" + size;
+                if (selected(name)) {
+                    runMain(name, rotors, size);
+                }
+            }
+        }
+    }
+
+    /** Run the benchmark converting a batch of COUNT messages of up to
+     *  LENGTH characters with M.convertBatch, each with its own random
+     *  settings and with one of DISTINCT random plugboards, using
+     *  VectorLanes iff VECTOR.  KIND is put in the benchmark's name. */
+    private void runBatch(Machine m, String kind, int count, int length,
+                          int distinct, boolean vector) {
+        String name = "Machine.convertBatch/" + kind
+            + (vector ? "vector" : "scalar");
+        if (!selected(name)) {
+            return;
+        }
+        Alphabet alpha = m.alphabet();
+        Random random = new Random(SEED);
+        String[] settings = new String[count];
+        Permutation[] plugboards = new Permutation[count];
+        String[] msgs = new String[count];
+        String text = message(alpha, length);
+        for (int k = 0; k < count; k += 1) {
+            char[] setting = new char[m.numRotors() - 1];
+            for (int i = 0; i < setting.length; i += 1) {
+                setting[i] = alpha.toChar(random.nextInt(alpha.size()));
+            }
+            settings[k] = new String(setting);
+            msgs[k] = text.substring(k % length);
+            if (k >= distinct) {
+                plugboards[k] = plugboards[k % distinct];
+                continue;
+            }
+            ArrayList<Character> chars = new ArrayList<Character>();
+            for (int i = 0; i < alpha.size(); i += 1) {
+                chars.add(alpha.toChar(i));
+            }
+            Collections.shuffle(chars, random);
+            StringBuilder cycles = new StringBuilder();
+            for (int i = 0; i < 2 * PLUGBOARD_PAIRS; i += 2) {
+                cycles.append('(').append(chars.get(i))
+                    .append(chars.get(i + 1)).append(") ");
+            }
+            plugboards[k] = new Permutation(cycles.toString(), alpha);
+        }
+        run(name, reps -> {
+            long sum = 0;
+            for (long r = 0; r < reps; r += 1) {
+                sum += m.convertBatch(settings, plugboards, msgs,
+                                      vector)[0].length();
+            }
+            return sum;
+        });
+    }
+
+    /** Run the end-to-end benchmark NAME: Main converting generated
+     *  input for a generated machine with ROTORS rotor slots and an
+     *  alphabet of ALPHASIZE characters. */
+    private void runMain(String name, int rotors, int alphaSize) {
+        try {
+            File config = File.createTempFile("enigma", ".conf");
+            File input = File.createTempFile("enigma", ".in");
+            File output = File.createTempFile("enigma", ".out");
+            config.deleteOnExit();
+            input.deleteOnExit();
+            output.deleteOnExit();
+            String configText = configuration(rotors, alphaSize);
+            write(config, configText);
+            Machine m = Main.configure(config.getPath());
+            write(input, input(m, configText, MAIN_INPUT_LENGTH));
+            String[] args = { config.getPath(), input.getPath(),
+                              output.getPath() };
+            run(name, reps -> {
+                for (long r = 0; r < reps; r += 1) {
+                    new Main(args).process();
+                }
+                return output.length();
+            });
+        } catch (IOException excp) {
+            throw error("could not create benchmark files");
+        }
+    }
+
+    /** Run the benchmark NAME, whose operation is BODY, if selected, and
+     *  record its result. */
+    private void run(String name, Body body) {
+        if (!selected(name)) {
+            return;
+        }
+        long reps = calibrate(body);
+        for (int i = 0; i < _warmup; i += 1) {
+            time(body, reps);
+            reps = calibrate(body);
+        }
+        double[] nanosPerOp = new double[_iterations];
+        for (int i = 0; i < _iterations; i += 1) {
+            nanosPerOp[i] = (double) time(body, reps) / reps;
+        }
+        double mean = 0;
+        for (double t : nanosPerOp) {
+            mean += t;
+        }
+        mean /= nanosPerOp.length;
+        double var = 0;
+        for (double t : nanosPerOp) {
+            var += (t - mean) * (t - mean);
+        }
+        double dev = nanosPerOp.length > 1
+            ? Math.sqrt(var / (nanosPerOp.length - 1)) : 0;
+        _results.put(name, mean);
+        System.out.printf("%-36s %16s ns/op  +- %s%n", name,
+                          format(mean), format(dev));
+    }
+
+    /** Return a number of repetitions of BODY that takes about as long as
+     *  an iteration should.  Called again after each warm-up iteration,
+     *  since an operation whose first runs are slow (as vector code is
+     *  until it is compiled) would otherwise be repeated too few times
+     *  to warm up. */
+    private long calibrate(Body body) {
+        long reps = 1;
+        while (true) {
+            long nanos = time(body, reps);
+            if (nanos >= _iterationNanos / 2 || reps > Long.MAX_VALUE / 4) {
+                return Math.max(1, reps * _iterationNanos
+                                / Math.max(1, nanos));
+            }
+            reps *= nanos < _iterationNanos / 64 ? 16 : 2;
+        }
+    }
+
+    /** Return the time in nanoseconds taken by REPS repetitions of
+     *  BODY. */
+    private long time(Body body, long reps) {
+        long start = System.nanoTime();
+        _sink += body.run(reps);
+        return System.nanoTime() - start;
+    }
+
+    /** Print the comparison with saved results, if requested, and save
+     *  the results, if requested.  Returns false iff the comparison found
+     *  a regression. */
+    boolean finish() {
+        boolean ok = true;
+        if (_compare != null) {
+            Map<String, Double> baseline = load(_compare);
+            for (Map.Entry<String, Double> entry : _results.entrySet()) {
+                Double before = baseline.get(entry.getKey());
+                if (before == null) {
+                    continue;
+                }
+                double change = 100.0 * (entry.getValue() - before) / before;
+                boolean regressed = change > _tolerance;
+                ok &= !regressed;
+                System.out.printf("%-36s %+8.1f%%%s%n", entry.getKey(),
+                                  change, regressed ? "  REGRESSION" : "");
+            }
+        }
+        if (_save != null) {
+            try (PrintWriter out = new PrintWriter(new FileWriter(_save))) {
+                for (Map.Entry<String, Double> entry : _results.entrySet()) {
+                    out.printf("%s\t%.3f%n", entry.getKey(), entry.getValue());
+                }
+            } catch (IOException excp) {
+                throw error("could not write %s", _save);
+            }
+        }
+        if (_sink == 42) {
+            System.out.println();
+        }
+        return ok;
+    }
+
+    /** Return the results saved in the file named NAME. */
+    private static Map<String, Double> load(String name) {
+        Map<String, Double> result = new LinkedHashMap<String, Double>();
+        try (Scanner in = new Scanner(new File(name))) {
+            while (in.hasNextLine()) {
+                String[] fields = in.nextLine().split("\t");
+                if (fields.length == 2) {
+                    result.put(fields[0], Double.parseDouble(fields[1]));
+                }
+            }
+        } catch (IOException | NumberFormatException excp) {
+            throw error("could not read results from %s", name);
+        }
+        return result;
+    }
+
+    /** Returns true iff the benchmark NAME is selected by the filter. */
+    private boolean selected(String name) {
+        return _filter == null || name.contains(_filter);
+    }
+
+    /** Return a machine with ROTORS slots over an alphabet of ALPHASIZE
+     *  characters, with its rotors inserted and set and an empty
+     *  plugboard. */
+    private static Machine machine(int rotors, int alphaSize) {
+        try {
+            File config = File.createTempFile("enigma", ".conf");
+            config.deleteOnExit();
+            String text = configuration(rotors, alphaSize);
+            write(config, text);
+            Machine m = Main.configure(config.getPath());
+            String settings = settingsLine(m, text, new Random(SEED));
+            String[] words = settings.split(" ");
+            String[] names = new String[rotors];
+            System.arraycopy(words, 1, names, 0, rotors);
+            m.insertRotors(names);
+            m.setRotors(words[rotors + 1]);
+            m.setPlugboard(new Permutation("", m.alphabet()));
+            return m;
+        } catch (IOException excp) {
+            throw error("could not create benchmark files");
+        }
+    }
+
+    /** Return one of the moving rotors available to M. */
+    private static Rotor movingRotor(Machine m) {
+        for (Rotor rotor : m.allRotors()) {
+            if (rotor.rotates()) {
+                return rotor;
+            }
+        }
+        throw error("no moving rotors");
+    }
+
+    /** Return the text of a configuration file for a machine with ROTORS
+     *  slots, of which about three fifths have pawls, over an alphabet of
+     *  ALPHASIZE characters.  It describes one reflector, the needed
+     *  non-moving rotors, and the needed moving rotors plus two spares. */
+    static String configuration(int rotors, int alphaSize) {
+        Random random = new Random(SEED + 31 * rotors + alphaSize);
+        String alpha = alphabet(alphaSize);
+        int pawls = Math.max(1, rotors * 3 / 5);
+        StringBuilder text = new StringBuilder();
+        text.append(alpha).append('\n');
+        text.append(rotors).append(' ').append(pawls).append('\n');
+        text.append("R0 R").append(reflector(alpha, random)).append('\n');
+        for (int i = 1; i < rotors - pawls; i += 1) {
+            text.append("F").append(i).append(" N")
+                .append(cycles(alpha, random)).append('\n');
+        }
+        for (int i = 0; i < pawls + 2; i += 1) {
+            text.append("M").append(i).append(" M")
+                .append(alpha.charAt(random.nextInt(alphaSize)))
+                .append(alpha.charAt(random.nextInt(alphaSize)))
+                .append(cycles(alpha, random)).append('\n');
+        }
+        return text.toString();
+    }
+
+    /** Return the first N characters that may appear in an alphabet:
+     *  upper-case letters, then lower-case letters and digits, then other
+     *  printable ASCII characters. */
+    private static String alphabet(int n) {
+        StringBuilder chars = new StringBuilder();
+        for (char c = 'A'; c <= 'Z'; c += 1) {
+            chars.append(c);
+        }
+        for (char c = 'a'; c <= 'z'; c += 1) {
+            chars.append(c);
+        }
+        for (char c = '0'; c <= '9'; c += 1) {
+            chars.append(c);
+        }
+        for (char c = '!'; c <= '~'; c += 1) {
+            if (!Character.isLetterOrDigit(c) && "()*_".indexOf(c) < 0) {
+                chars.append(c);
+            }
+        }
+        if (n > chars.length()) {
+            throw error("alphabet of %d characters not supported", n);
+        }
+        return chars.substring(0, n);
+    }
+
+    /** Returns true iff C may start a cycle in a configuration file. */
+    private static boolean startsCycle(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    /** Return the cycles of a random reflector on ALPHA, an alphabet
+     *  with an even number of characters, using RANDOM.  Every pair
+     *  starts with a letter or digit, as the configuration syntax
+     *  requires. */
+    private static String reflector(String alpha, Random random) {
+        ArrayList<Character> word = new ArrayList<Character>();
+        ArrayList<Character> other = new ArrayList<Character>();
+        for (char c : alpha.toCharArray()) {
+            (startsCycle(c) ? word : other).add(c);
+        }
+        Collections.shuffle(word, random);
+        StringBuilder result = new StringBuilder();
+        for (char c : other) {
+            result.append(" (").append(word.remove(word.size() - 1))
+                .append(c).append(')');
+        }
+        for (int i = 0; i + 1 < word.size(); i += 2) {
+            result.append(" (").append(word.get(i)).append(word.get(i + 1))
+                .append(')');
+        }
+        return result.toString();
+    }
+
+    /** Return the cycles of a random permutation of ALPHA using RANDOM,
+     *  each starting with a letter or digit.  Fixed points are left
+     *  out. */
+    private static String cycles(String alpha, Random random) {
+        while (true) {
+            ArrayList<Character> order = new ArrayList<Character>();
+            for (char c : alpha.toCharArray()) {
+                order.add(c);
+            }
+            Collections.shuffle(order, random);
+            StringBuilder result = new StringBuilder();
+            boolean[] seen = new boolean[alpha.length()];
+            boolean ok = true;
+            for (int i = 0; i < order.size() && ok; i += 1) {
+                if (seen[i]) {
+                    continue;
+                }
+                ArrayList<Character> cycle = new ArrayList<Character>();
+                for (int j = i; !seen[j];
+                     j = alpha.indexOf(order.get(j))) {
+                    seen[j] = true;
+                    cycle.add(alpha.charAt(j));
+                }
+                int start = 0;
+                while (start < cycle.size()
+                       && !startsCycle(cycle.get(start))) {
+                    start += 1;
+                }
+                if (start == cycle.size()) {
+                    ok = cycle.size() == 1;
+                    continue;
+                }
+                if (cycle.size() == 1) {
+                    continue;
+                }
+                result.append(" (");
+                for (int k = 0; k < cycle.size(); k += 1) {
+                    result.append(cycle.get((start + k) % cycle.size()));
+                }
+                result.append(')');
+            }
+            if (ok) {
+                return result.toString();
+            }
+        }
+    }
+
+    /** Return a settings line for M, whose configuration text is CONFIG,
+     *  choosing rotors and setting with RANDOM. */
+    private static String settingsLine(Machine m, String config,
+                                       Random random) {
+        ArrayList<String> fixed = new ArrayList<String>();
+        ArrayList<String> moving = new ArrayList<String>();
+        for (String line : config.split("\n")) {
+            if (line.startsWith("F")) {
+                fixed.add(line.split(" ")[0]);
+            } else if (line.startsWith("M")) {
+                moving.add(line.split(" ")[0]);
+            }
+        }
+        Collections.shuffle(moving, random);
+        StringBuilder line = new StringBuilder("* R0");
+        for (String name : fixed) {
+            line.append(' ').append(name);
+        }
+        for (int i = 0; i < m.numPawls(); i += 1) {
+            line.append(' ').append(moving.get(i));
+        }
+        line.append(' ');
+        for (int i = 1; i < m.numRotors(); i += 1) {
+            line.append(m.alphabet().toChar(
+                random.nextInt(m.alphabet().size())));
+        }
+        return line.toString();
+    }
+
+    /** Return an input file for M, whose configuration text is CONFIG,
+     *  holding about LENGTH message characters in settings blocks of
+     *  lines of random lengths. */
+    private static String input(Machine m, String config, int length) {
+        Random random = new Random(SEED);
+        StringBuilder text = new StringBuilder();
+        int written = 0;
+        while (written < length) {
+            text.append(settingsLine(m, config, random)).append('\n');
+            for (int line = 0; line < BLOCK_LINES && written < length;
+                 line += 1) {
+                int n = 1 + random.nextInt(2 * MEAN_LINE_LENGTH);
+                for (int i = 0; i < n; i += 1) {
+                    text.append(m.alphabet().toChar(
+                        random.nextInt(m.alphabet().size())));
+                    if (random.nextInt(WORD_LENGTH) == 0) {
+                        text.append(' ');
+                    }
+                }
+                text.append('\n');
+                written += n;
+            }
+        }
+        return text.toString();
+    }
+
+    /** Return a random message of LENGTH characters from ALPHA. */
+    private static String message(Alphabet alpha, int length) {
+        Random random = new Random(SEED);
+        char[] msg = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            msg[i] = alpha.toChar(random.nextInt(alpha.size()));
+        }
+        return new String(msg);
+    }
+
+    /** Return INDEX_MASK+1 random indices into an alphabet of SIZE
+     *  characters. */
+    private static int[] indices(int size) {
+        Random random = new Random(SEED);
+        int[] result = new int[INDEX_MASK + 1];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = random.nextInt(size);
+        }
+        return result;
+    }
+
+    /** Write TEXT to FILE. */
+    private static void write(File file, String text) throws IOException {
+        try (Writer out = new FileWriter(file)) {
+            out.write(text);
+        }
+    }
+
+    /** Return LENGTH as a number of KB or MB. */
+    private static String sizeName(int length) {
+        if (length >= 1 << 20) {
+            return (length >> 20) + "MB";
+        }
+        return (length >> 10) + "KB";
+    }
+
+    /** Return a time in nanoseconds, NANOS, for printing. */
+    private static String format(double nanos) {
+        return String.format(nanos < 100 ? "%.3f" : "%,.0f", nanos);
+    }
+
+    /** Return the value of the option ARG. */
+    private static String value(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    /** Return the numeric value of the option ARG. */
+    private static int number(String arg) {
+        try {
+            return Integer.parseInt(value(arg));
+        } catch (NumberFormatException excp) {
+            throw error("bad number in %s", arg);
+        }
+    }
+
+    /** The operation measured by a benchmark. */
+    interface Body {
+        /** Perform the operation REPS times and return a value computed
+         *  from the results, so that the work cannot be optimized away. */
+        long run(long reps);
+    }
+
+    /** Rotor slots of the machine used by the micro-benchmarks. */
+    private static final int NAVAL_ROTORS = 5;
+
+    /** Alphabet sizes benchmarked. */
+    private static final int[] ALPHABET_SIZES = { 26, 90 };
+
+    /** Rotor slots of the machines benchmarked end to end. */
+    private static final int[] MACHINE_ROTORS = { 5, 10, 30 };
+
+    /** Message lengths benchmarked with Machine.convert(String). */
+    private static final int[] MESSAGE_LENGTHS = {
+        1 << 10, 1 << 20, 100 << 20
+    };
+
+    /** Longest message benchmarked with --quick. */
+    private static final int QUICK_LIMIT = 1 << 20;
+
+    /** Number of messages in the batches given to convertBatch. */
+    private static final int BATCH_MESSAGES = 256;
+
+    /** Length of the longest message in a batch. */
+    private static final int BATCH_MESSAGE_LENGTH = 1 << 10;
+
+    /** Number of messages in the batches of short messages given to
+     *  convertBatch. */
+    private static final int SHORT_BATCH_MESSAGES = 1 << 12;
+
+    /** Length of the longest message in a batch of short messages. */
+    private static final int SHORT_MESSAGE_LENGTH = 32;
+
+    /** Number of different plugboards in a batch of short messages. */
+    private static final int SHORT_BATCH_PLUGBOARDS = 4;
+
+    /** Plugboard connections per message in a batch. */
+    private static final int PLUGBOARD_PAIRS = 10;
+
+    /** Number of message characters in end-to-end inputs. */
+    private static final int MAIN_INPUT_LENGTH = 1 << 20;
+
+    /** Message lines per settings block in end-to-end inputs. */
+    private static final int BLOCK_LINES = 200;
+
+    /** Mean message line length in end-to-end inputs. */
+    private static final int MEAN_LINE_LENGTH = 60;
+
+    /** Mean distance between spaces in end-to-end inputs. */
+    private static final int WORD_LENGTH = 6;
+
+    /** Mask selecting an entry of the random index tables. */
+    private static final int INDEX_MASK = (1 << 12) - 1;
+
+    /** Seed for all generated data. */
+    private static final long SEED = 61;
+
+    /** Only run benchmarks whose names contain this, if not null. */
+    private String _filter;
+
+    /** Warm-up iterations per benchmark. */
+    private int _warmup = 3;
+
+    /** Measured iterations per benchmark. */
+    private int _iterations = 5;
+
+    /** Target length of an iteration in nanoseconds. */
+    private long _iterationNanos = 500_000_000L;
+
+    /** True iff the 100 MB benchmarks are skipped. */
+    private boolean _quick;
+
+    /** File to save results to, or null. */
+    private String _save;
+
+    /** File of results to compare with, or null. */
+    private String _compare;
+
+    /** Percentage slowdown allowed when comparing. */
+    private int _tolerance = 10;
+
+    /** Mean time per operation in nanoseconds of each benchmark run, in
+     *  the order run. */
+    private final Map<String, Double> _results =
+        new LinkedHashMap<String, Double>();
+
+    /** Accumulates benchmark results so they are not optimized away. */
+    private long _sink;
+}